@@ -0,0 +1,68 @@
+package se.cygni.competence.rx.workshop;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft_6455;
+import rx.Observable;
+
+import java.lang.management.ManagementFactory;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap a {@link Server} retains per idle connection. Opens connections which are never bound to
+ * a socket, like {@link DispatchBenchmark} does, and compares the used heap after a full GC with that of the
+ * bare {@link WebSocketImpl}s, so that only the server's own state and the handler's pipeline are counted.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li><code>footprint.connections</code> the number of connections to open, default 100000</li>
+ * <li><code>footprint.handler</code> <code>facit</code> for the reference handler, searching a backend which
+ * never answers, or <code>empty</code> for a handler which subscribes to nothing, default facit</li>
+ * <li><code>footprint.compression</code> true to give each connection the permessage-deflate extension, as
+ * {@link ServerOptions#withCompression(int, boolean)} does, default false. Only the heap part of its cost is
+ * measured; the native zlib memory of its deflater and inflater is not</li>
+ * </ul>
+ */
+public class ConnectionFootprint {
+
+    public static void main(String[] args) throws UnknownHostException, InterruptedException {
+        final int connections = Integer.getInteger("footprint.connections", 100000);
+        final String handlerName = System.getProperty("footprint.handler", "facit");
+        final boolean compression = Boolean.getBoolean("footprint.compression");
+        Log.get("server").setLevel(Log.Level.OFF);
+        final ConnectionHandler handler = "empty".equals(handlerName)
+                ? (goClicks, queryInputs, instantSearchChanges, enterPresses, links, status) -> {
+                }
+                : new FacitHandler(searchTerm -> Observable.never());
+        final Server server = new Server(0, handler);
+        final long start = usedHeap();
+        final List<WebSocket> webSockets = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            webSockets.add(new WebSocketImpl(server, compression
+                    ? new Draft_6455(new CountingDeflateExtension(new CompressionStats(), 256, false))
+                    : new Draft_6455()));
+        }
+        final long bare = usedHeap();
+        for (WebSocket webSocket : webSockets) {
+            server.onOpen(webSocket, null);
+        }
+        final long opened = usedHeap();
+        System.out.println(connections + " connections with the " + handlerName + " handler"
+                + (compression ? ", with compression (native zlib memory not included)" : ""));
+        System.out.println("WebSocketImpl:  " + (bare - start) / connections + " bytes per connection");
+        System.out.println("Server+handler: " + (opened - bare) / connections + " bytes per connection");
+        //Keep the connections reachable until after the last measurement
+        System.out.println(webSockets.size() + " connections measured");
+        server.stop(0);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
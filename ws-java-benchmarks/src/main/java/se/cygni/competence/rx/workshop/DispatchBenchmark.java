@@ -0,0 +1,67 @@
+package se.cygni.competence.rx.workshop;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft_6455;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dispatch of inbound messages through {@link Server#onMessageInternal} into the subjects of a connection.
+ * The connection is never bound to a socket, and the handler just consumes what it receives.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DispatchBenchmark {
+
+    private static final Map<String, String> MESSAGES = new HashMap<>();
+
+    static {
+        MESSAGES.put("go.click", "{\"type\":\"go.click\"}");
+        MESSAGES.put("query.input", "{\"type\":\"query.input\",\"text\":\"software testing\"}");
+        MESSAGES.put("instant.enable", "{\"type\":\"instant.enable\",\"value\":true}");
+        MESSAGES.put("enter.press", "{\"type\":\"enter.press\"}");
+    }
+
+    @Param({"go.click", "query.input", "instant.enable", "enter.press"})
+    String type;
+
+    Server server;
+    WebSocket webSocket;
+    String message;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws UnknownHostException {
+        Log.get("server").setLevel(Log.Level.OFF);
+        server = new Server(0, (goClicks, queryInputs, instantSearchChanges, enterPresses, links, status) -> {
+            goClicks.subscribe(blackhole::consume);
+            queryInputs.subscribe(blackhole::consume);
+            instantSearchChanges.subscribe(blackhole::consume);
+            enterPresses.subscribe(blackhole::consume);
+        });
+        webSocket = new WebSocketImpl(server, new Draft_6455());
+        server.onOpen(webSocket, null);
+        message = MESSAGES.get(type);
+    }
+
+    @Benchmark
+    public void dispatch() {
+        server.onMessageInternal(webSocket, message);
+    }
+}
@@ -0,0 +1,342 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Simulates a number of concurrent typists against a running {@link Server} and measures the time
+ * from each search action to the matching <code>backend.status</code> and <code>new.links</code> frames.
+ * <p>
+ * A search action is the <code>go.click</code> following a typed query, or in instant mode the last
+ * keystroke of the query. Keystrokes are sent one <code>query.input</code> per character, with
+ * exponentially distributed gaps around the configured typing interval.
+ * <p>
+ * The status latency is taken at the status which ends the search for the query of the action,
+ * <code>search for '&lt;query&gt;' done</code> or <code>failed</code>, or a backend being unavailable.
+ * Statuses like <code>listening</code> and <code>searching</code>, and those of searches started by an earlier
+ * action, are ignored. The links latency is taken at the first <code>new.links</code> after the search is done.
+ * <p>
+ * Actions are timed from when they are sent, not from when they were due. Typists don't wait for an answer
+ * before typing the next query, so a slow server still gets the full load, but delays in the generator's own
+ * scheduler are not counted: the latencies are not corrected for coordinated omission, and a generator which
+ * can't keep up under-reports them.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li><code>load.uri</code> the server to connect to, default <code>ws://localhost:4739</code>. Add
+ * <code>?batch=1</code> to have the server batch its messages.</li>
+ * <li><code>load.connections</code> the number of typists, default 100</li>
+ * <li><code>load.duration</code> seconds to run, default 60</li>
+ * <li><code>load.typingInterval</code> mean milliseconds between keystrokes, default 150</li>
+ * <li><code>load.thinkTime</code> milliseconds between a search and the next query, default 2000</li>
+ * <li><code>load.mode</code> <code>go</code>, <code>instant</code> or <code>mixed</code>, default <code>go</code></li>
+ * <li><code>load.output</code> directory to write histogram dumps to, default <code>.</code></li>
+ * <li><code>load.format</code> <code>json</code> or <code>cbor</code>, the {@link WireFormat} to negotiate, default <code>json</code></li>
+ * </ul>
+ * Latencies are recorded in microseconds and reported in milliseconds.
+ */
+public class LoadGenerator {
+
+    private static final String[] QUERIES = {
+            "test", "apache kafka", "reactive extensions", "stockholm", "java", "debounce",
+            "observable", "backpressure", "netty", "websocket", "wikipedia", "duck"
+    };
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final URI uri;
+    private final int connections;
+    private final long durationMillis;
+    private final long typingIntervalMillis;
+    private final long thinkTimeMillis;
+    private final String mode;
+    private final WireFormat format;
+    private final ScheduledExecutorService scheduler;
+    private final Histogram statusLatency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Histogram linksLatency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final AtomicLong actions = new AtomicLong();
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong missedLinks = new AtomicLong();
+    private volatile boolean running = true;
+
+    public LoadGenerator(URI uri, int connections, long durationMillis, long typingIntervalMillis, long thinkTimeMillis, String mode,
+                         WireFormat format) {
+        this.uri = uri;
+        this.connections = connections;
+        this.durationMillis = durationMillis;
+        this.typingIntervalMillis = typingIntervalMillis;
+        this.thinkTimeMillis = thinkTimeMillis;
+        this.mode = mode;
+        this.format = format;
+        this.scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * A search action, and which of its answers have arrived.
+     */
+    private static class Action {
+        final String done;
+        final String failed;
+        final long start = System.nanoTime();
+        final AtomicBoolean statusRecorded = new AtomicBoolean();
+        final AtomicBoolean linksRecorded = new AtomicBoolean();
+        volatile boolean linksDue;
+
+        Action(String query) {
+            this.done = "search for '" + query + "' done";
+            this.failed = "search for '" + query + "' failed";
+        }
+
+        boolean isEnd(String status) {
+            return status.equals(done) || status.equals(failed) || status.contains(" is unavailable: ");
+        }
+
+        /**
+         * @return whether the search was done, or never answered, without its links arriving.
+         */
+        boolean missedLinks() {
+            return !linksRecorded.get() && (linksDue || !statusRecorded.get());
+        }
+    }
+
+    private class Typist extends WebSocketClient {
+        private final boolean instant;
+        private final AtomicReference<Action> current = new AtomicReference<>();
+
+        Typist(boolean instant) {
+            super(uri, new Draft_6455(Collections.<IExtension>emptyList(),
+                    Collections.<IProtocol>singletonList(new Protocol(format.getSubprotocol()))));
+            this.instant = instant;
+        }
+
+        private void send(ObjectNode message) {
+            try {
+                if (format == WireFormat.JSON) {
+                    send(format.mapper.writeValueAsString(message));
+                } else {
+                    send(format.mapper.writeValueAsBytes(message));
+                }
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void startTyping() {
+            if (instant) {
+                send(JsonNodeFactory.instance.objectNode().put("type", "instant.enable").put("value", true));
+            }
+            scheduleQuery(ThreadLocalRandom.current().nextLong(thinkTimeMillis + 1));
+        }
+
+        private void scheduleQuery(long delayMillis) {
+            if (!running) {
+                return;
+            }
+            final String query = QUERIES[ThreadLocalRandom.current().nextInt(QUERIES.length)];
+            scheduler.schedule(() -> type(query, 1), delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void type(String query, int length) {
+            if (!running || !isOpen()) {
+                return;
+            }
+            send(JsonNodeFactory.instance.objectNode().put("type", "query.input").put("text", query.substring(0, length)));
+            if (length < query.length()) {
+                scheduler.schedule(() -> type(query, length + 1), keystrokeGap(), TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (!instant) {
+                send(JsonNodeFactory.instance.objectNode().put("type", "go.click"));
+            }
+            startAction(query);
+            scheduleQuery(thinkTimeMillis);
+        }
+
+        private void startAction(String query) {
+            final Action previous = current.getAndSet(new Action(query));
+            if (previous != null && previous.missedLinks()) {
+                missedLinks.incrementAndGet();
+            }
+            actions.incrementAndGet();
+        }
+
+        private long keystrokeGap() {
+            return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * typingIntervalMillis);
+        }
+
+        @Override
+        public void onOpen(ServerHandshake serverHandshake) {
+        }
+
+        @Override
+        public void onMessage(String s) {
+            final long now = System.nanoTime();
+            framesReceived.incrementAndGet();
+            if (s.startsWith("{\"type\":\"batch\"")) {
+                onMessage(parse(s), now);
+            } else if (s.contains("\"new.links\"")) {
+                onLinks(now);
+            } else if (s.contains("\"backend.status\"")) {
+                onStatus(parse(s).path("status").asText(), now);
+            }
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            final long now = System.nanoTime();
+            framesReceived.incrementAndGet();
+            final JsonNode message;
+            try {
+                message = format.mapper.readTree(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            onMessage(message, now);
+        }
+
+        private JsonNode parse(String s) {
+            try {
+                return format.mapper.readTree(s);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void onMessage(JsonNode message, long now) {
+            final String type = message.path("type").asText();
+            if ("batch".equals(type)) {
+                //Connections opened with ?batch=1 get the status and the links of a search in one frame
+                for (JsonNode batched : message.path("messages")) {
+                    onMessage(batched, now);
+                }
+            } else if ("new.links".equals(type)) {
+                onLinks(now);
+            } else if ("backend.status".equals(type)) {
+                onStatus(message.path("status").asText(), now);
+            }
+        }
+
+        private void onStatus(String status, long now) {
+            final Action action = current.get();
+            if (action == null || !action.isEnd(status) || !action.statusRecorded.compareAndSet(false, true)) {
+                return;
+            }
+            record(statusLatency, action, now);
+            //The links of a search are sent right after its done status, a failed search has none
+            action.linksDue = status.equals(action.done);
+        }
+
+        private void onLinks(long now) {
+            final Action action = current.get();
+            if (action != null && action.linksDue && action.linksRecorded.compareAndSet(false, true)) {
+                record(linksLatency, action, now);
+            }
+        }
+
+        private void record(Histogram histogram, Action action, long now) {
+            histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(now - action.start), HIGHEST_TRACKABLE_MICROS));
+        }
+
+        @Override
+        public void onClose(int i, String s, boolean b) {
+        }
+
+        @Override
+        public void onError(Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void run() throws InterruptedException {
+        final List<Typist> typists = new ArrayList<>();
+        final Random random = new Random();
+        for (int i = 0; i < connections; i++) {
+            final boolean instant = "instant".equals(mode) || ("mixed".equals(mode) && random.nextBoolean());
+            final Typist typist = new Typist(instant);
+            if (!typist.connectBlocking()) {
+                throw new IllegalStateException("Could not connect to " + uri);
+            }
+            typists.add(typist);
+        }
+        System.out.println(connections + " connections open, running for " + durationMillis + " ms");
+        final long start = System.nanoTime();
+        typists.forEach(Typist::startTyping);
+        Thread.sleep(durationMillis);
+        running = false;
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        scheduler.shutdownNow();
+        for (Typist typist : typists) {
+            typist.closeBlocking();
+        }
+        report(seconds);
+    }
+
+    private void report(double seconds) {
+        System.out.printf("actions: %d (%.1f/s), frames received: %d (%.1f/s), actions without links: %d%n",
+                actions.get(), actions.get() / seconds, framesReceived.get(), framesReceived.get() / seconds, missedLinks.get());
+        summary("backend.status", statusLatency);
+        summary("new.links", linksLatency);
+    }
+
+    private static void summary(String name, Histogram histogram) {
+        System.out.printf("%-15s count=%d p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms%n", name,
+                histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+
+    private void dump(File directory) throws FileNotFoundException {
+        dump(new File(directory, "status-latency.hgrm"), statusLatency);
+        dump(new File(directory, "links-latency.hgrm"), linksLatency);
+    }
+
+    private static void dump(File file, Histogram histogram) throws FileNotFoundException {
+        try (PrintStream out = new PrintStream(file)) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+        System.out.println("wrote " + file);
+    }
+
+    public static void main(String[] args) throws URISyntaxException, InterruptedException, FileNotFoundException {
+        final LoadGenerator generator = new LoadGenerator(
+                new URI(System.getProperty("load.uri", "ws://localhost:4739")),
+                Integer.getInteger("load.connections", 100),
+                TimeUnit.SECONDS.toMillis(Long.getLong("load.duration", 60)),
+                Long.getLong("load.typingInterval", 150),
+                Long.getLong("load.thinkTime", 2000),
+                System.getProperty("load.mode", "go"),
+                WireFormat.valueOf(System.getProperty("load.format", "json").toUpperCase()));
+        generator.run();
+        generator.dump(new File(System.getProperty("load.output", ".")));
+    }
+}
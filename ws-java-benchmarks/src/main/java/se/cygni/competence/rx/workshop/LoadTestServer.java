@@ -0,0 +1,58 @@
+package se.cygni.competence.rx.workshop;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+import static se.cygni.competence.rx.workshop.FakeSearchBackend.LatencyDistribution.bimodal;
+import static se.cygni.competence.rx.workshop.FakeSearchBackend.LatencyDistribution.logNormal;
+
+/**
+ * Runs the reference {@link FacitHandler} against a {@link FakeSearchBackend}, as a target for
+ * {@link LoadGenerator} which doesn't depend on the real search APIs.
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ * <li><code>server.port</code> the WebSocket port, default 4739</li>
+ * <li><code>server.decoderThreads</code> threads reading and decoding frames, default the number of cores</li>
+ * <li><code>server.handlerThreads</code> threads running the handler pipelines, or 0 to run them on the
+ * decoding threads, default 0</li>
+ * <li><code>server.compression</code> true to offer permessage-deflate for frames of 256 bytes or more, default false</li>
+ * <li><code>backend.links</code> links per search response, default 20</li>
+ * <li><code>backend.chunkSize</code> response chunk size in bytes, or 0 to not use chunked encoding, default 1024</li>
+ * <li><code>backend.median</code> median backend latency in ms, default 80</li>
+ * <li><code>backend.slowFraction</code> fraction of requests with a ten times slower median, default 0.02</li>
+ * </ul>
+ */
+public class LoadTestServer {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final FakeSearchBackend backend = startBackend();
+        serve(new Server(Integer.getInteger("server.port", 4739),
+                new FacitHandler(new DuckDuckGoClient(backend.getHost(), backend.getPort())), serverOptions()), backend);
+    }
+
+    static FakeSearchBackend startBackend() throws IOException {
+        final double median = Double.parseDouble(System.getProperty("backend.median", "80"));
+        final double slowFraction = Double.parseDouble(System.getProperty("backend.slowFraction", "0.02"));
+        return new FakeSearchBackend(
+                Integer.getInteger("backend.links", 20),
+                Integer.getInteger("backend.chunkSize", 1024),
+                bimodal(logNormal(median, 0.3), logNormal(median * 10, 0.3), slowFraction));
+    }
+
+    static ServerOptions serverOptions() {
+        final ServerOptions options = new ServerOptions()
+                .withDecoderThreads(Integer.getInteger("server.decoderThreads", Runtime.getRuntime().availableProcessors()))
+                .withHandlerThreads(Integer.getInteger("server.handlerThreads", 0));
+        return Boolean.getBoolean("server.compression") ? options.withCompression(256, false) : options;
+    }
+
+    static void serve(Server server, FakeSearchBackend backend) throws InterruptedException, IOException {
+        server.start();
+        System.out.println("Server started on port " + server.getPort() + ", fake backend on port " + backend.getPort());
+        final CountDownLatch shuttingDown = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(shuttingDown::countDown));
+        shuttingDown.await();
+        backend.close();
+    }
+}
@@ -0,0 +1,66 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+
+/**
+ * Decoding of inbound and encoding of outbound messages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageBenchmark {
+
+    private static final String QUERY_INPUT = "{\"type\":\"query.input\",\"text\":\"software testing\"}";
+
+    @Param({"4", "40"})
+    int links;
+
+    List<String> linkList;
+    ObjectNode linksMessage;
+
+    @Setup
+    public void setUp() {
+        linkList = Payloads.links(links);
+        linksMessage = Util.createLinksMessage(linkList);
+    }
+
+    @Benchmark
+    public JsonNode toJson() {
+        return Util.toJson(QUERY_INPUT);
+    }
+
+    @Benchmark
+    public String toStringLinks() {
+        return Util.toString(linksMessage);
+    }
+
+    @Benchmark
+    public ObjectNode createLinksMessage() {
+        return Util.createLinksMessage(linkList);
+    }
+
+    @Benchmark
+    public ObjectNode createStatusMessage() {
+        return Util.createStatusMessage("search for 'software testing' done");
+    }
+
+    @Benchmark
+    public String encodeLinksMessage() {
+        return Util.toString(Util.createLinksMessage(linkList));
+    }
+}
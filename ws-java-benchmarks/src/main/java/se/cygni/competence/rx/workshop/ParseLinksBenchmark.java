@@ -0,0 +1,47 @@
+package se.cygni.competence.rx.workshop;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+
+/**
+ * Parsing of search responses, on recorded payloads scaled to different numbers of links.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseLinksBenchmark {
+
+    @Param({"4", "40", "400"})
+    int links;
+
+    String duckDuckGoResponse;
+    String wikipediaResponse;
+
+    @Setup
+    public void setUp() {
+        duckDuckGoResponse = Payloads.duckDuckGo(links);
+        wikipediaResponse = Payloads.wikipedia(links);
+    }
+
+    @Benchmark
+    public List<String> duckDuckGo() {
+        return DuckDuckGoClient.parseLinks(duckDuckGoResponse);
+    }
+
+    @Benchmark
+    public List<String> wikipedia() {
+        return WikipediaSearchClient.parseLinks(wikipediaResponse);
+    }
+}
@@ -0,0 +1,67 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recorded search responses, scaled up to a given number of links by repeating their entries.
+ */
+class Payloads {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static String duckDuckGo(int links) {
+        final ObjectNode root = (ObjectNode) read("/duckduckgo-test.json");
+        final ArrayNode recorded = (ArrayNode) root.get("RelatedTopics");
+        final ArrayNode topics = MAPPER.createArrayNode();
+        for (int i = 0; i < links; i++) {
+            final ObjectNode topic = recorded.get(i % recorded.size()).deepCopy();
+            topic.put("FirstURL", topic.get("FirstURL").textValue() + "_" + i);
+            topics.add(topic);
+        }
+        root.set("RelatedTopics", topics);
+        return Util.toString(root);
+    }
+
+    static String wikipedia(int links) {
+        final ObjectNode root = (ObjectNode) read("/wikipedia-test.json");
+        final ObjectNode query = (ObjectNode) root.get("query");
+        final List<JsonNode> recorded = new ArrayList<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = query.get("pages").fields(); it.hasNext(); ) {
+            recorded.add(it.next().getValue());
+        }
+        final ObjectNode pages = MAPPER.createObjectNode();
+        for (int i = 0; i < links; i++) {
+            final ObjectNode page = recorded.get(i % recorded.size()).deepCopy();
+            page.put("canonicalurl", page.get("canonicalurl").textValue() + "_" + i);
+            pages.set(Integer.toString(100000 + i), page);
+        }
+        query.set("pages", pages);
+        return Util.toString(root);
+    }
+
+    static List<String> links(int count) {
+        final List<String> links = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            links.add("https://duckduckgo.com/Software_testing_" + i);
+        }
+        return links;
+    }
+
+    private static JsonNode read(String resource) {
+        try (InputStream in = Payloads.class.getResourceAsStream(resource)) {
+            return MAPPER.readTree(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
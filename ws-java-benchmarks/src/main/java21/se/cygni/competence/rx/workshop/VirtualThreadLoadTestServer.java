@@ -0,0 +1,44 @@
+package se.cygni.competence.rx.workshop;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link LoadTestServer} on virtual threads, to compare with the Rx pipelines under the same load. Takes the
+ * same system properties, and <code>server.handler</code>:
+ * <ul>
+ * <li><code>blocking</code> the {@link BlockingFacitHandler} on a virtual thread per connection, searching
+ * the fake backend with a blocking {@link HttpClient} on a virtual thread per search. The default.</li>
+ * <li><code>rx</code> the {@link FacitHandler}, with the inbound events of each connection handled on virtual
+ * threads instead of on the decoding threads.</li>
+ * </ul>
+ */
+public class VirtualThreadLoadTestServer {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final FakeSearchBackend backend = LoadTestServer.startBackend();
+        final ServerOptions options = LoadTestServer.serverOptions();
+        final ConnectionHandler handler;
+        if ("rx".equals(System.getProperty("server.handler", "blocking"))) {
+            handler = new FacitHandler(new DuckDuckGoClient(backend.getHost(), backend.getPort()));
+            options.withHandlerExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        } else {
+            handler = new VirtualThreadHandler(new BlockingFacitHandler(blockingClient(backend)));
+        }
+        LoadTestServer.serve(new Server(Integer.getInteger("server.port", 4739), handler, options), backend);
+    }
+
+    private static SearchClient blockingClient(FakeSearchBackend backend) {
+        final HttpClient client = HttpClient.newHttpClient();
+        final String base = "http://" + backend.getHost() + ":" + backend.getPort();
+        return new BlockingSearchClient(searchTerm -> {
+            final HttpRequest request = HttpRequest.newBuilder(
+                    URI.create(base + "/?q=" + Util.urlEncode(searchTerm) + "&format=json&pretty=1")).build();
+            return DuckDuckGoClient.parseLinks(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+        });
+    }
+}
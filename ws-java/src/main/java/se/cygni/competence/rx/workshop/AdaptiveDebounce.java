@@ -0,0 +1,75 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A debounce whose quiet period adapts to how fast the user types and how slow the backend is.
+ * <p>
+ * Each subscription learns the typical gap between items from their arrival times, as a moving average
+ * which ignores pauses longer than the longest quiet period. The quiet period is twice that gap, so a
+ * fast typist gets a short one, plus half the current backend latency, so that a struggling backend
+ * is sent fewer searches which will be replaced before they complete. It is kept within the given bounds.
+ * <p>
+ * Items, errors, completion and unsubscription behave as with {@link Observable#debounce(long, TimeUnit)}.
+ */
+public class AdaptiveDebounce {
+
+    private static final double SMOOTHING = 0.3;
+    private static final double TYPING_FACTOR = 2.0;
+    private static final double LATENCY_FACTOR = 0.5;
+
+    private final long minMillis;
+    private final long maxMillis;
+    private final Func0<Long> backendLatencyMillis;
+    private final Scheduler scheduler;
+
+    /**
+     * @param backendLatencyMillis gives the current backend latency in milliseconds.
+     */
+    public AdaptiveDebounce(long minQuiet, long maxQuiet, TimeUnit unit, Func0<Long> backendLatencyMillis) {
+        this(minQuiet, maxQuiet, unit, backendLatencyMillis, Schedulers.computation());
+    }
+
+    public AdaptiveDebounce(long minQuiet, long maxQuiet, TimeUnit unit, Func0<Long> backendLatencyMillis, Scheduler scheduler) {
+        this.minMillis = unit.toMillis(minQuiet);
+        this.maxMillis = unit.toMillis(maxQuiet);
+        this.backendLatencyMillis = backendLatencyMillis;
+        this.scheduler = scheduler;
+    }
+
+    public <T> Observable.Transformer<T, T> debounce() {
+        return items -> Observable.defer(() -> {
+            final Cadence cadence = new Cadence();
+            return items.debounce(item -> Observable.timer(cadence.quietPeriod(scheduler.now()), TimeUnit.MILLISECONDS, scheduler));
+        });
+    }
+
+    long quietPeriod(double gapMillis, long latencyMillis) {
+        final long quiet = Math.round(TYPING_FACTOR * gapMillis + LATENCY_FACTOR * latencyMillis);
+        return Math.max(minMillis, Math.min(maxMillis, quiet));
+    }
+
+    /**
+     * The typing cadence of one subscription. Items arrive one at a time, so it needs no locking.
+     */
+    private class Cadence {
+        private double gapMillis = (minMillis + maxMillis) / (2 * TYPING_FACTOR);
+        private long lastMillis = -1;
+
+        long quietPeriod(long now) {
+            if (lastMillis >= 0) {
+                final long gap = now - lastMillis;
+                if (gap <= maxMillis) {
+                    gapMillis += SMOOTHING * (gap - gapMillis);
+                }
+            }
+            lastMillis = now;
+            return AdaptiveDebounce.this.quietPeriod(gapMillis, backendLatencyMillis.call());
+        }
+    }
+}
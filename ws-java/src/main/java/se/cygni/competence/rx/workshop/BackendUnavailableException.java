@@ -0,0 +1,20 @@
+package se.cygni.competence.rx.workshop;
+
+/**
+ * Signals that a search was rejected without being sent to its backend, because the backend
+ * is failing or already has as many searches in flight as it can handle.
+ * The message is meant to be shown to the user as a status.
+ */
+public class BackendUnavailableException extends RuntimeException {
+
+    private final String backend;
+
+    public BackendUnavailableException(String backend, String reason) {
+        super(backend + " is unavailable: " + reason);
+        this.backend = backend;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+}
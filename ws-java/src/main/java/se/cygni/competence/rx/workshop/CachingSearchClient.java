@@ -0,0 +1,163 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of search results in front of another {@link SearchClient}.
+ * <p>
+ * Results are kept for a time to live, and empty results for a separate (usually shorter) time.
+ * Once a result has expired it is still served for a stale-while-revalidate period, during which a
+ * single background search refreshes it. When the cache is full the least recently used entry is evicted.
+ * <p>
+ * Cache hits are emitted synchronously on the subscribing thread. One instance is meant to be shared
+ * by all connections.
+ */
+public class CachingSearchClient implements SearchClient {
+
+    private static class Entry {
+        private final List<String> links;
+        private final long freshUntil;
+        private final long staleUntil;
+        private final AtomicBoolean revalidating = new AtomicBoolean();
+
+        Entry(List<String> links, long freshUntil, long staleUntil) {
+            this.links = links;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+        }
+    }
+
+    private final SearchClient delegate;
+    private final Scheduler scheduler;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final long staleMillis;
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param delegate             the client to search with on a cache miss.
+     * @param maxEntries           the maximum number of search terms to keep results for.
+     * @param ttl                  how long a non-empty result is served without searching again.
+     * @param negativeTtl          how long an empty result is served without searching again.
+     * @param staleWhileRevalidate how long an expired result is still served while it is being refreshed.
+     * @param unit                 the unit of the durations.
+     */
+    public CachingSearchClient(SearchClient delegate, int maxEntries, long ttl, long negativeTtl,
+                               long staleWhileRevalidate, TimeUnit unit) {
+        this(delegate, maxEntries, ttl, negativeTtl, staleWhileRevalidate, unit, Schedulers.immediate());
+    }
+
+    /**
+     * As {@link #CachingSearchClient(SearchClient, int, long, long, long, TimeUnit)}, but reads the
+     * current time from the given {@link Scheduler}.
+     */
+    public CachingSearchClient(SearchClient delegate, int maxEntries, long ttl, long negativeTtl,
+                               long staleWhileRevalidate, TimeUnit unit, Scheduler scheduler) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.negativeTtlMillis = unit.toMillis(negativeTtl);
+        this.staleMillis = unit.toMillis(staleWhileRevalidate);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Observable<List<String>> searchRelated(String searchTerm) {
+        //Look up on subscription, so that a search which is retried or subscribed to later sees the cache as it is then
+        return Observable.defer(() -> {
+            final long now = scheduler.now();
+            final Entry entry;
+            synchronized (entries) {
+                entry = entries.get(searchTerm);
+            }
+            if (entry != null) {
+                if (now < entry.freshUntil) {
+                    hits.incrementAndGet();
+                    return Observable.just(entry.links);
+                }
+                if (now < entry.staleUntil) {
+                    staleHits.incrementAndGet();
+                    revalidate(searchTerm, entry);
+                    return Observable.just(entry.links);
+                }
+            }
+            misses.incrementAndGet();
+            return delegate.searchRelated(searchTerm).doOnNext(links -> store(searchTerm, links));
+        });
+    }
+
+    private void revalidate(String searchTerm, Entry entry) {
+        if (entry.revalidating.compareAndSet(false, true)) {
+            //Also when the search completes without a result, or the entry would never be revalidated again
+            delegate.searchRelated(searchTerm)
+                    .doOnTerminate(() -> entry.revalidating.set(false))
+                    .subscribe(links -> store(searchTerm, links), e -> {
+                    });
+        }
+    }
+
+    private void store(String searchTerm, List<String> links) {
+        final long now = scheduler.now();
+        final long freshUntil = now + (links.isEmpty() ? negativeTtlMillis : ttlMillis);
+        final Entry entry = new Entry(links, freshUntil, freshUntil + staleMillis);
+        synchronized (entries) {
+            entries.put(searchTerm, entry);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the number of searches answered with a fresh cached result.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of searches answered with an expired result while it was being refreshed.
+     */
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+
+    /**
+     * @return the number of searches passed on to the underlying client.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries evicted to stay within the entry limit.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
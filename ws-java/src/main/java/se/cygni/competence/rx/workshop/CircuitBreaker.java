@@ -0,0 +1,82 @@
+package se.cygni.competence.rx.workshop;
+
+/**
+ * Stops sending requests to a backend after a number of failures in a row.
+ * <p>
+ * The breaker is closed to begin with, and lets all requests through. After
+ * <code>failureThreshold</code> consecutive failures it opens, and rejects all requests for
+ * <code>openMillis</code>. Then it is half open, and lets a single trial request through:
+ * if that succeeds the breaker closes, if it fails the breaker opens again.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @param now the current time in milliseconds.
+     * @return true if a request may be sent, which must then be followed by one of
+     * {@link #onSuccess()}, {@link #onFailure(long)} or {@link #onIgnored()}.
+     */
+    public synchronized boolean allowRequest(long now) {
+        if (state == State.OPEN && now - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure(long now) {
+        trialInFlight = false;
+        if (state == State.OPEN) {
+            return;
+        }
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = now;
+        }
+    }
+
+    /**
+     * A request was cancelled before it completed, which says nothing about the backend.
+     */
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return the milliseconds until an open breaker lets a trial request through.
+     */
+    public synchronized long getRetryInMillis(long now) {
+        return state == State.OPEN ? Math.max(0, openedAt + openMillis - now) : 0;
+    }
+}
@@ -0,0 +1,55 @@
+package se.cygni.competence.rx.workshop;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for permessage-deflate compression of the outbound frames of all connections of a {@link Server}.
+ */
+public class CompressionStats {
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong compressedFrames = new AtomicLong();
+    private final AtomicLong bytesBefore = new AtomicLong();
+    private final AtomicLong bytesAfter = new AtomicLong();
+
+    void onFrame(long before, long after, boolean compressed) {
+        frames.incrementAndGet();
+        if (compressed) {
+            compressedFrames.incrementAndGet();
+        }
+        bytesBefore.addAndGet(before);
+        bytesAfter.addAndGet(after);
+    }
+
+    /**
+     * @return the number of data frames sent on connections which negotiated compression.
+     */
+    public long getFrames() {
+        return frames.get();
+    }
+
+    /**
+     * @return the number of those frames which were large enough to be compressed.
+     */
+    public long getCompressedFrames() {
+        return compressedFrames.get();
+    }
+
+    /**
+     * @return the payload bytes of those frames before compression.
+     */
+    public long getBytesBefore() {
+        return bytesBefore.get();
+    }
+
+    /**
+     * @return the payload bytes of those frames as sent.
+     */
+    public long getBytesAfter() {
+        return bytesAfter.get();
+    }
+
+    public double getRatio() {
+        final long before = bytesBefore.get();
+        return before == 0 ? 1 : (double) bytesAfter.get() / before;
+    }
+}
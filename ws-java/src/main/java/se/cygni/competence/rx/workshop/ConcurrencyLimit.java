@@ -0,0 +1,84 @@
+package se.cygni.competence.rx.workshop;
+
+/**
+ * A limit on the number of requests in flight which adapts to the round trip times of the requests,
+ * using the gradient between the shortest round trip time seen and the current one.
+ * <p>
+ * While round trip times stay near the shortest seen, the limit grows by a small headroom of
+ * about <code>sqrt(limit)</code>. When they grow, requests are queueing somewhere, and the limit
+ * shrinks in proportion. Failed requests shrink it by 10%. The shortest round trip time is
+ * forgotten now and then, so that the limit follows a backend whose latency has changed for good.
+ */
+public class ConcurrencyLimit {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double BACKOFF = 0.9;
+    private static final int SAMPLES_PER_MIN_RTT = 500;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+    private long minRttNanos = Long.MAX_VALUE;
+    private int samples;
+
+    public ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @return true if a request may be sent, which must then be followed by one of
+     * {@link #onSuccess(long)}, {@link #onDropped()} or {@link #onIgnored()}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * A request answered after the given round trip time.
+     */
+    public synchronized void onSuccess(long rttNanos) {
+        inFlight--;
+        if (++samples % SAMPLES_PER_MIN_RTT == 0) {
+            minRttNanos = rttNanos;
+        }
+        minRttNanos = Math.min(minRttNanos, Math.max(1, rttNanos));
+        final double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, (double) minRttNanos / rttNanos));
+        final double newLimit = limit * gradient + Math.sqrt(limit);
+        setLimit(limit * (1 - SMOOTHING) + newLimit * SMOOTHING);
+    }
+
+    /**
+     * A request failed or timed out, which is taken as a sign of overload.
+     */
+    public synchronized void onDropped() {
+        inFlight--;
+        setLimit(limit * BACKOFF);
+    }
+
+    /**
+     * A request was cancelled, which says nothing about the backend.
+     */
+    public synchronized void onIgnored() {
+        inFlight--;
+    }
+
+    private void setLimit(double limit) {
+        this.limit = Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
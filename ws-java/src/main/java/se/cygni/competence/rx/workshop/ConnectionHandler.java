@@ -21,7 +21,7 @@ public interface ConnectionHandler {
      * The wiring which you perform in this method will have effect throughout the lifetime of the
      * connection. The {@link Server} keeps track of the {@link Observable}s and {@link Observer}s
      * for any given connection, and since they will become wired together through your pipeline,
-     * the pipeline will persist.
+     * the pipeline will persist. The input {@link Observable}s complete when the connection is closed.
      *
      * @param goClicks             emits an empty string whenever the "Go" button in the GUI is clicked.
      * @param queryInputs          emits query phrases from the search field. Will emit the complete query phrase whenever
@@ -0,0 +1,213 @@
+package se.cygni.competence.rx.workshop;
+
+import io.netty.buffer.ByteBuf;
+import io.reactivex.netty.RxNetty;
+import io.reactivex.netty.client.ClientMetricEventsListener;
+import io.reactivex.netty.client.ClientMetricsEvent;
+import io.reactivex.netty.client.PoolExhaustedException;
+import io.reactivex.netty.client.RxClient;
+import io.reactivex.netty.protocol.http.client.HttpClient;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import rx.Observable;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settings and metrics shared by the HTTP clients of the search clients.
+ * <p>
+ * Each client keeps a pool of keep-alive connections to its host, so that searches don't pay for a
+ * TCP (and TLS) handshake. The pool holds at most <code>maxConnectionsPerHost</code> connections and
+ * closes connections which have been idle for longer than the idle timeout. When all connections of
+ * a host are in use, a request waits for up to the acquire timeout for one to be released, and then
+ * fails with a {@link PoolExhaustedException}.
+ */
+public class ConnectionPool implements ConnectionPoolMXBean {
+
+    private static final long ACQUIRE_RETRY_MILLIS = 5;
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+    private static ConnectionPool defaultPool;
+
+    private int maxConnectionsPerHost = 16;
+    private long idleTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+    private long acquireTimeoutMillis = TimeUnit.SECONDS.toMillis(1);
+    private long metricsIntervalMillis = TimeUnit.SECONDS.toMillis(Long.getLong("metrics.interval", 60));
+
+    private final Metrics metrics = new Metrics();
+    private final AtomicLong acquireTimeouts = new AtomicLong();
+    private final Recorder acquireWait = new Recorder(3);
+    private final AtomicLong nextRollMillis = new AtomicLong();
+    private volatile Histogram lastAcquireWait = new Histogram(3);
+
+    /**
+     * @return the pool used by clients created without one. Registered as the MBean
+     * <code>se.cygni.competence.rx.workshop:type=ConnectionPool</code>.
+     */
+    public static synchronized ConnectionPool getDefault() {
+        if (defaultPool == null) {
+            defaultPool = new ConnectionPool();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(defaultPool,
+                        new ObjectName("se.cygni.competence.rx.workshop:type=ConnectionPool"));
+            } catch (JMException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return defaultPool;
+    }
+
+    public ConnectionPool withMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        return this;
+    }
+
+    public ConnectionPool withIdleTimeout(long idleTimeout, TimeUnit unit) {
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+        return this;
+    }
+
+    public ConnectionPool withAcquireTimeout(long acquireTimeout, TimeUnit unit) {
+        this.acquireTimeoutMillis = unit.toMillis(acquireTimeout);
+        return this;
+    }
+
+    /**
+     * Sets how long each interval of the acquire wait lasts. Defaults to the system property
+     * <code>metrics.interval</code>, in seconds, or 60.
+     */
+    public ConnectionPool withMetricsInterval(long interval, TimeUnit unit) {
+        this.metricsIntervalMillis = unit.toMillis(interval);
+        return this;
+    }
+
+    /**
+     * Creates a pooling client to the given host. Settings changed afterwards don't affect the client.
+     */
+    HttpClient<ByteBuf, ByteBuf> createClient(String host, int port) {
+        final HttpClient<ByteBuf, ByteBuf> client = RxNetty.<ByteBuf, ByteBuf>newHttpClientBuilder(host, port)
+                .withMaxConnections(maxConnectionsPerHost)
+                .withIdleConnectionsTimeoutMillis(idleTimeoutMillis)
+                .config(RxClient.ClientConfig.Builder.newDefaultConfig())
+                .build();
+        client.subscribe(metrics);
+        return client;
+    }
+
+    /**
+     * Retries a request which failed because its host had no free connection, until the acquire timeout.
+     * The acquire wait of the request is the time from its first attempt to the start of the attempt
+     * which got a connection.
+     */
+    <T> Observable.Transformer<T, T> awaitConnection() {
+        return request -> Observable.defer(() -> {
+            final long start = System.nanoTime();
+            final long deadline = System.currentTimeMillis() + acquireTimeoutMillis;
+            final AtomicLong attemptStart = new AtomicLong(start);
+            final AtomicBoolean recorded = new AtomicBoolean();
+            return request.doOnSubscribe(() -> attemptStart.set(System.nanoTime())).doOnNext(response -> {
+                if (recorded.compareAndSet(false, true)) {
+                    acquireWait.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(attemptStart.get() - start),
+                            HIGHEST_TRACKABLE_MICROS));
+                }
+            }).retryWhen(errors -> errors.flatMap(e -> {
+                if (!(e instanceof PoolExhaustedException)) {
+                    return Observable.error(e);
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    acquireTimeouts.incrementAndGet();
+                    return Observable.error(e);
+                }
+                return Observable.timer(ACQUIRE_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            }));
+        });
+    }
+
+    @Override
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    @Override
+    public long getPoolSize() {
+        return metrics.connected.get() - metrics.closed.get();
+    }
+
+    @Override
+    public long getActiveConnections() {
+        return metrics.acquired.get() - metrics.released.get();
+    }
+
+    @Override
+    public long getIdleConnections() {
+        return Math.max(0, getPoolSize() - getActiveConnections());
+    }
+
+    @Override
+    public long getReusedConnections() {
+        return metrics.reused.get();
+    }
+
+    @Override
+    public long getEvictedConnections() {
+        return metrics.evicted.get();
+    }
+
+    @Override
+    public long getAcquireTimeouts() {
+        return acquireTimeouts.get();
+    }
+
+    @Override
+    public LatencySnapshot getAcquireWait() {
+        final long now = System.currentTimeMillis();
+        final long nextRoll = nextRollMillis.get();
+        if (now >= nextRoll && nextRollMillis.compareAndSet(nextRoll, now + metricsIntervalMillis)) {
+            lastAcquireWait = acquireWait.getIntervalHistogram();
+        }
+        return new LatencySnapshot(lastAcquireWait);
+    }
+
+    private class Metrics extends ClientMetricEventsListener<ClientMetricsEvent<?>> {
+        private final AtomicLong connected = new AtomicLong();
+        private final AtomicLong closed = new AtomicLong();
+        private final AtomicLong acquired = new AtomicLong();
+        private final AtomicLong released = new AtomicLong();
+        private final AtomicLong reused = new AtomicLong();
+        private final AtomicLong evicted = new AtomicLong();
+
+        @Override
+        protected void onConnectSuccess(long duration, TimeUnit timeUnit) {
+            connected.incrementAndGet();
+        }
+
+        @Override
+        protected void onConnectionCloseSuccess(long duration, TimeUnit timeUnit) {
+            closed.incrementAndGet();
+        }
+
+        @Override
+        protected void onPoolAcquireSuccess(long duration, TimeUnit timeUnit) {
+            acquired.incrementAndGet();
+        }
+
+        @Override
+        protected void onPoolReleaseSuccess(long duration, TimeUnit timeUnit) {
+            released.incrementAndGet();
+        }
+
+        @Override
+        protected void onPooledConnectionReuse() {
+            reused.incrementAndGet();
+        }
+
+        @Override
+        protected void onPooledConnectionEviction() {
+            evicted.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package se.cygni.competence.rx.workshop;
+
+/**
+ * JMX view of a {@link ConnectionPool}, summed over all hosts.
+ */
+public interface ConnectionPoolMXBean {
+    int getMaxConnectionsPerHost();
+
+    /**
+     * @return the number of open connections, active or idle.
+     */
+    long getPoolSize();
+
+    /**
+     * @return the number of connections currently used by a request.
+     */
+    long getActiveConnections();
+
+    long getIdleConnections();
+
+    /**
+     * @return the number of requests which got a connection that was already open.
+     */
+    long getReusedConnections();
+
+    /**
+     * @return the number of idle connections closed by the pool.
+     */
+    long getEvictedConnections();
+
+    /**
+     * @return the number of requests which gave up waiting for a connection.
+     */
+    long getAcquireTimeouts();
+
+    /**
+     * @return the time requests waited for a connection, including their retries while the pool was exhausted,
+     * in the last completed interval. Intervals are rolled when this is read, at most once per metrics interval.
+     */
+    LatencySnapshot getAcquireWait();
+}
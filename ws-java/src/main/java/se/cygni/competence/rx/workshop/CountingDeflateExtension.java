@@ -0,0 +1,42 @@
+package se.cygni.competence.rx.workshop;
+
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+/**
+ * The permessage-deflate extension, counting the bytes of outbound data frames before and after compression.
+ */
+class CountingDeflateExtension extends PerMessageDeflateExtension {
+
+    private final CompressionStats stats;
+
+    /**
+     * @param threshold       frames with smaller payloads are sent uncompressed.
+     * @param contextTakeover whether to keep the compression context between the messages of a connection,
+     *                        so that e.g. URL prefixes repeated across messages compress well.
+     */
+    CountingDeflateExtension(CompressionStats stats, int threshold, boolean contextTakeover) {
+        this.stats = stats;
+        setThreshold(threshold);
+        setServerNoContextTakeover(!contextTakeover);
+        setClientNoContextTakeover(!contextTakeover);
+    }
+
+    @Override
+    public void encodeFrame(Framedata inputFrame) {
+        if (!(inputFrame instanceof DataFrame)) {
+            super.encodeFrame(inputFrame);
+            return;
+        }
+        final int before = inputFrame.getPayloadData().remaining();
+        super.encodeFrame(inputFrame);
+        stats.onFrame(before, inputFrame.getPayloadData().remaining(), inputFrame.isRSV1());
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        return new CountingDeflateExtension(stats, getThreshold(), !isServerNoContextTakeover());
+    }
+}
@@ -1,10 +1,7 @@
 package se.cygni.competence.rx.workshop;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Charsets;
-import com.google.common.collect.Lists;
 import io.netty.buffer.ByteBuf;
-import io.reactivex.netty.RxNetty;
 import io.reactivex.netty.protocol.http.client.HttpClient;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
@@ -12,19 +9,35 @@ import rx.Observable;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * A client to <a href="https://duckduckgo.com/">https://duckduckgo.com/</a>
  */
-public class DuckDuckGoClient {
+public class DuckDuckGoClient implements SearchClient {
 
-    private HttpClient<ByteBuf, ByteBuf> client;
+    private static final Log LOG = Log.get("search");
+
+    private final HttpClient<ByteBuf, ByteBuf> client;
+    private final ConnectionPool pool;
 
     public DuckDuckGoClient() {
-        client = RxNetty.createHttpClient("api.duckduckgo.com", 80);
+        this("api.duckduckgo.com", 80);
+    }
+
+    /**
+     * Creates a client to a DuckDuckGo compatible API at the given host and port.
+     */
+    public DuckDuckGoClient(String host, int port) {
+        this(host, port, ConnectionPool.getDefault());
+    }
+
+    /**
+     * Creates a client to a DuckDuckGo compatible API at the given host and port, with connections from the given pool.
+     */
+    public DuckDuckGoClient(String host, int port, ConnectionPool pool) {
+        this.pool = pool;
+        client = pool.createClient(host, port);
     }
 
     /**
@@ -35,25 +48,29 @@ public class DuckDuckGoClient {
      * @param searchTerm the search term to search for
      * @return a list of links, where each link is the DuckDuckGo URL for a related search term.
      */
+    @Override
     public Observable<List<String>> searchRelated(String searchTerm) {
         final String relativeUrl = String.format("/?q=%s&format=json&pretty=1", Util.urlEncode(searchTerm));
-        System.out.println("Running request:" + relativeUrl + " on " + Thread.currentThread().getName());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Running request:" + relativeUrl + " on " + Thread.currentThread().getName());
+        }
         final HttpClientRequest<ByteBuf> req = HttpClientRequest.createGet(relativeUrl);
-        System.out.println("Created request");
         return client.submit(req)
+                .compose(pool.awaitConnection())
                 .flatMap(HttpClientResponse::getContent)
-                .reduce("", (s, byteBuf) -> s+ byteBuf.toString(Charsets.UTF_8))
-                .flatMap(all -> Observable.just(parseLinks(all)));
+                .collect(DuckDuckGoClient::createLinkExtractor, StreamingJsonExtractor::feed)
+                .map(StreamingJsonExtractor::finish);
     }
 
-    private static List<String> parseLinks(String s) {
-        final JsonNode j = Util.toJson(s);
-        final JsonNode relatedTopics = j.get("RelatedTopics");
+    private static StreamingJsonExtractor createLinkExtractor() {
+        return new StreamingJsonExtractor("RelatedTopics", StreamingJsonExtractor.ANY, "FirstURL");
+    }
 
-        final ArrayList<JsonNode> relatedTopicsList = Lists.newArrayList(relatedTopics);
-        return relatedTopicsList.stream().filter(r -> r.has("FirstURL"))
-                .map(r -> r.get("FirstURL").textValue())
-                .collect(Collectors.toList());
+    static List<String> parseLinks(String s) {
+        final StreamingJsonExtractor extractor = createLinkExtractor();
+        final byte[] bytes = s.getBytes(Charsets.UTF_8);
+        extractor.feed(bytes, 0, bytes.length);
+        return extractor.finish();
     }
 
 }
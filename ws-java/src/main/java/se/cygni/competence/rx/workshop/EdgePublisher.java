@@ -0,0 +1,197 @@
+package se.cygni.competence.rx.workshop;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An input of a {@link ReactiveConnectionHandler}: buffers the events offered by the server until its single
+ * subscriber requests them, applying an {@link OverflowPolicy} when the buffer is full. Once the subscriber has
+ * cancelled, or if the handler didn't subscribe, events are discarded without counting as dropped.
+ */
+class EdgePublisher<T> implements Publisher<T> {
+
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Runnable onDropped;
+    private final Queue<T> buffer = new ArrayDeque<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    //0 before subscription, 1 when subscribed, 2 when ignored by the handler
+    private final AtomicInteger subscribed = new AtomicInteger();
+    private volatile Subscriber<? super T> subscriber;
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+
+    /**
+     * @param onDropped called for each event dropped by the policy.
+     */
+    EdgePublisher(int capacity, OverflowPolicy policy, Runnable onDropped) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.onDropped = onDropped;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> s) {
+        if (s == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!subscribed.compareAndSet(0, 1)) {
+            s.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            s.onError(new IllegalStateException(subscribed.get() == 2
+                    ? "An input must be subscribed to in onConnectionOpen" : "An input accepts only one subscriber"));
+            return;
+        }
+        s.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    error = new IllegalArgumentException("Requested " + n + " items, must be positive");
+                } else {
+                    add(n);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                drain();
+            }
+        });
+        subscriber = s;
+        drain();
+    }
+
+    /**
+     * Emits the event if it is requested, or buffers it.
+     * @return false if the buffer is full and the policy is {@link OverflowPolicy#DISCONNECT}.
+     */
+    boolean offer(T event) {
+        if (cancelled) {
+            return true;
+        }
+        synchronized (buffer) {
+            if (buffer.size() >= capacity) {
+                switch (policy) {
+                    case DROP_OLDEST:
+                        buffer.poll();
+                        onDropped.run();
+                        break;
+                    case DROP_NEWEST:
+                        onDropped.run();
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+            buffer.add(event);
+        }
+        drain();
+        return true;
+    }
+
+    /**
+     * Discards the events of this input from now on, if the handler hasn't subscribed to it.
+     */
+    void ignoreUnlessSubscribed() {
+        if (subscribed.compareAndSet(0, 2)) {
+            cancelled = true;
+            synchronized (buffer) {
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Completes the subscriber once the buffered events have been emitted.
+     */
+    void complete() {
+        done = true;
+        drain();
+    }
+
+    private void add(long n) {
+        long r;
+        do {
+            r = requested.get();
+            if (r == Long.MAX_VALUE) {
+                return;
+            }
+        } while (!requested.compareAndSet(r, r + n < 0 ? Long.MAX_VALUE : r + n));
+    }
+
+    private boolean isEmpty() {
+        synchronized (buffer) {
+            return buffer.isEmpty();
+        }
+    }
+
+    private T poll() {
+        synchronized (buffer) {
+            return buffer.poll();
+        }
+    }
+
+    //Only one thread at a time drains, so that the subscriber is signalled serially
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            final Subscriber<? super T> s = subscriber;
+            if (s != null) {
+                final long r = requested.get();
+                long emitted = 0;
+                while (true) {
+                    if (cancelled) {
+                        synchronized (buffer) {
+                            buffer.clear();
+                        }
+                        return;
+                    }
+                    if (error != null) {
+                        cancelled = true;
+                        s.onError(error);
+                        return;
+                    }
+                    final boolean d = done;
+                    final boolean empty = isEmpty();
+                    if (d && empty) {
+                        cancelled = true;
+                        s.onComplete();
+                        return;
+                    }
+                    if (empty || emitted == r) {
+                        break;
+                    }
+                    final T event = poll();
+                    if (event != null) {
+                        s.onNext(event);
+                        emitted++;
+                    }
+                }
+                if (emitted != 0 && r != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,120 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import rx.functions.Func1;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An output of a {@link ReactiveConnectionHandler}: writes what it receives to the {@link OutboundQueue} of
+ * its connection, and keeps up to a window of items requested while the connection is writable. While it is
+ * not, the subscriber waits in <code>starved</code> until the server finds the connection drained and calls
+ * {@link #requestMore()}.
+ * <p>
+ * Demand is topped up from the handler's thread as items arrive, and from the server's drainer, and the
+ * subscription is cancelled when the connection closes. Only one thread at a time signals the subscription,
+ * as Reactive Streams requires.
+ */
+class EdgeSubscriber<T> implements Subscriber<T> {
+
+    private static final Log LOG = Log.get("server");
+
+    private final OutboundQueue outbound;
+    private final OutboundQueue.Kind kind;
+    private final Func1<T, ObjectNode> toMessage;
+    private final int window;
+    private final Set<EdgeSubscriber<?>> starved;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile Subscription subscription;
+    private volatile boolean cancelled;
+
+    EdgeSubscriber(OutboundQueue outbound, OutboundQueue.Kind kind, Func1<T, ObjectNode> toMessage, int window,
+                   Set<EdgeSubscriber<?>> starved) {
+        this.outbound = outbound;
+        this.kind = kind;
+        this.toMessage = toMessage;
+        this.window = window;
+        this.starved = starved;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+        if (subscription != null) {
+            s.cancel();
+            return;
+        }
+        subscription = s;
+        signal();
+    }
+
+    @Override
+    public void onNext(T item) {
+        outstanding.decrementAndGet();
+        outbound.offer(kind, toMessage.call(item));
+        requestMore();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOG.warn(kind + " output failed", t);
+        starved.remove(this);
+    }
+
+    @Override
+    public void onComplete() {
+        starved.remove(this);
+    }
+
+    /**
+     * Tops up the requested items to the window if the connection is writable.
+     */
+    void requestMore() {
+        signal();
+    }
+
+    /**
+     * Stops the handler's publisher, for when the connection is closed.
+     */
+    void cancel() {
+        cancelled = true;
+        starved.remove(this);
+        signal();
+    }
+
+    private void signal() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            final Subscription s = subscription;
+            if (s != null) {
+                if (cancelled) {
+                    //Leaves wip raised, so that nothing signals the subscription again
+                    s.cancel();
+                    return;
+                }
+                topUp(s);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void topUp(Subscription s) {
+        if (!outbound.isWritable()) {
+            starved.add(this);
+            return;
+        }
+        starved.remove(this);
+        //onNext only ever lowers outstanding, so the window is never exceeded
+        final int n = window - outstanding.get();
+        if (n > 0) {
+            outstanding.addAndGet(n);
+            s.request(n);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches several backends at the same time and interleaves their results,
+ * i.e. [backend 1 #1, backend 2 #1, backend 1 #2, backend 2 #2 ...], without duplicates.
+ * <p>
+ * Each backend has its own deadline. A backend which hasn't answered by its deadline, or which fails,
+ * is unsubscribed from and contributes no links, so a search is never slower than the longest deadline
+ * and never fails because one backend does. Only if every backend rejects a search with a
+ * {@link BackendUnavailableException} does the search fail, with a {@link BackendUnavailableException}.
+ */
+public class FederatedSearchClient implements SearchClient {
+
+    public static class Backend {
+        private final String name;
+        private final SearchClient client;
+        private final long deadlineMillis;
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rejections = new AtomicLong();
+
+        public Backend(String name, SearchClient client, long deadline, TimeUnit unit) {
+            this.name = name;
+            this.client = client;
+            this.deadlineMillis = unit.toMillis(deadline);
+        }
+
+        private Observable<List<String>> search(String searchTerm, Scheduler scheduler, AtomicInteger rejected) {
+            return client.searchRelated(searchTerm)
+                    .timeout(deadlineMillis, TimeUnit.MILLISECONDS, scheduler)
+                    .onErrorResumeNext(e -> {
+                        if (e instanceof BackendUnavailableException) {
+                            rejections.incrementAndGet();
+                            rejected.incrementAndGet();
+                        } else {
+                            (e instanceof TimeoutException ? timeouts : errors).incrementAndGet();
+                        }
+                        return Observable.just(Collections.<String>emptyList());
+                    })
+                    .defaultIfEmpty(Collections.<String>emptyList())
+                    .take(1);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of searches this backend didn't answer before its deadline.
+         */
+        public long getTimeouts() {
+            return timeouts.get();
+        }
+
+        /**
+         * @return the number of searches which failed in this backend.
+         */
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /**
+         * @return the number of searches this backend rejected with a {@link BackendUnavailableException}.
+         */
+        public long getRejections() {
+            return rejections.get();
+        }
+    }
+
+    private final List<Backend> backends;
+    private final Scheduler scheduler;
+
+    public FederatedSearchClient(Backend... backends) {
+        this(Schedulers.computation(), backends);
+    }
+
+    /**
+     * @param scheduler the {@link Scheduler} to time the deadlines on.
+     */
+    public FederatedSearchClient(Scheduler scheduler, Backend... backends) {
+        this.backends = Arrays.asList(backends);
+        this.scheduler = scheduler;
+    }
+
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    @Override
+    public Observable<List<String>> searchRelated(String searchTerm) {
+        return Observable.defer(() -> {
+            final AtomicInteger rejected = new AtomicInteger();
+            final List<Observable<List<String>>> results = new ArrayList<>();
+            for (Backend backend : backends) {
+                results.add(backend.search(searchTerm, scheduler, rejected));
+            }
+            return Observable.zip(results, lists -> {
+                if (rejected.get() == backends.size()) {
+                    throw new BackendUnavailableException("search", "all backends are unavailable");
+                }
+                return merge(lists);
+            });
+        });
+    }
+
+    private static List<String> merge(Object[] lists) {
+        final List<List<String>> typed = new ArrayList<>();
+        for (Object list : lists) {
+            @SuppressWarnings("unchecked")
+            final List<String> links = (List<String>) list;
+            typed.add(links);
+        }
+        return interleave(typed);
+    }
+
+    static <T> List<T> interleave(List<? extends List<? extends T>> lists) {
+        final Set<T> rs = new LinkedHashSet<>();
+        final List<Iterator<? extends T>> iterators = new ArrayList<>();
+        for (List<? extends T> list : lists) {
+            iterators.add(list.iterator());
+        }
+        for (boolean any = true; any; ) {
+            any = false;
+            for (Iterator<? extends T> it : iterators) {
+                if (it.hasNext()) {
+                    rs.add(it.next());
+                    any = true;
+                }
+            }
+        }
+        return new ArrayList<>(rs);
+    }
+}
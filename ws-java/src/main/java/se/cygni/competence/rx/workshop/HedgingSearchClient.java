@@ -0,0 +1,153 @@
+package se.cygni.competence.rx.workshop;
+
+import org.HdrHistogram.Recorder;
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cuts the tail latency of another {@link SearchClient} by hedging: if a search hasn't answered
+ * within the hedge delay, the same search is sent again and whichever answers first is used.
+ * The other one is unsubscribed from, which cancels its request. Once the hedge has been sent, a failure
+ * of either request leaves the search to the other one, and the search only fails if both do.
+ * <p>
+ * The hedge delay is either fixed, or follows a percentile of the latencies observed so far,
+ * so that only the slowest requests are hedged. To keep a slow backend from getting twice the load,
+ * hedges are limited to a fraction of all searches.
+ */
+public class HedgingSearchClient implements SearchClient {
+
+    private static final int SAMPLES_PER_DELAY_UPDATE = 200;
+
+    private final SearchClient delegate;
+    private final double percentile;
+    private final double maxHedgeRatio;
+    private final Scheduler scheduler;
+    private final Recorder latencies = new Recorder(3);
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private volatile long delayMicros;
+
+    /**
+     * Hedges after a fixed delay.
+     * @param maxHedgeRatio the maximum fraction of searches to hedge, e.g. 0.05 for 5%.
+     */
+    public HedgingSearchClient(SearchClient delegate, long delay, TimeUnit unit, double maxHedgeRatio) {
+        this(delegate, -1, delay, unit, maxHedgeRatio, Schedulers.computation());
+    }
+
+    /**
+     * Hedges after the given percentile of the observed latencies, e.g. 95 for the p95.
+     * @param initialDelay the delay to use until enough latencies have been observed.
+     * @param maxHedgeRatio the maximum fraction of searches to hedge, e.g. 0.05 for 5%.
+     */
+    public HedgingSearchClient(SearchClient delegate, double percentile, long initialDelay, TimeUnit unit, double maxHedgeRatio) {
+        this(delegate, percentile, initialDelay, unit, maxHedgeRatio, Schedulers.computation());
+    }
+
+    HedgingSearchClient(SearchClient delegate, double percentile, long delay, TimeUnit unit, double maxHedgeRatio,
+                        Scheduler scheduler) {
+        this.delegate = delegate;
+        this.percentile = percentile;
+        this.maxHedgeRatio = maxHedgeRatio;
+        this.scheduler = scheduler;
+        this.delayMicros = unit.toMicros(delay);
+    }
+
+    @Override
+    public Observable<List<String>> searchRelated(String searchTerm) {
+        return Observable.defer(() -> {
+            searches.incrementAndGet();
+            final long start = scheduler.now();
+            final AtomicBoolean hedged = new AtomicBoolean();
+            final AtomicInteger failures = new AtomicInteger();
+            //amb follows whichever signals first, so a request which fails while the other one may still
+            //succeed must not signal at all. The second failure fails the search.
+            final Observable<List<String>> primary = delegate.searchRelated(searchTerm)
+                    .onErrorResumeNext(e -> !hedged.get() || failures.incrementAndGet() == 2
+                            ? Observable.<List<String>>error(e) : Observable.<List<String>>never());
+            final Observable<List<String>> hedge = Observable.timer(delayMicros, TimeUnit.MICROSECONDS, scheduler)
+                    .flatMap(tick -> {
+                        if (!tryHedge()) {
+                            return Observable.<List<String>>never();
+                        }
+                        hedged.set(true);
+                        return hedge(searchTerm).onErrorResumeNext(e -> failures.incrementAndGet() == 2
+                                ? Observable.<List<String>>error(e) : Observable.<List<String>>never());
+                    });
+            //Time from the start of the search, also when the hedge wins, so that the slow primaries
+            //which were hedged still pull the percentile up
+            return Observable.amb(primary, hedge)
+                    .doOnNext(links -> record(TimeUnit.MILLISECONDS.toMicros(scheduler.now() - start)));
+        });
+    }
+
+    private boolean tryHedge() {
+        while (true) {
+            final long hedges = this.hedges.get();
+            if (hedges >= maxHedgeRatio * searches.get()) {
+                return false;
+            }
+            if (this.hedges.compareAndSet(hedges, hedges + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private Observable<List<String>> hedge(String searchTerm) {
+        return delegate.searchRelated(searchTerm).doOnNext(links -> hedgeWins.incrementAndGet());
+    }
+
+    private void record(long micros) {
+        if (percentile < 0) {
+            return;
+        }
+        latencies.recordValue(micros);
+        if (samples.incrementAndGet() % SAMPLES_PER_DELAY_UPDATE == 0) {
+            delayMicros = latencies.getIntervalHistogram().getValueAtPercentile(percentile);
+        }
+    }
+
+    /**
+     * @return the current hedge delay in milliseconds.
+     */
+    public long getDelayMillis() {
+        return TimeUnit.MICROSECONDS.toMillis(delayMicros);
+    }
+
+    public long getSearches() {
+        return searches.get();
+    }
+
+    /**
+     * @return the number of searches which were sent a second time.
+     */
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    /**
+     * @return the number of hedged searches where the second request answered first.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    public double getHedgeRate() {
+        final long searches = this.searches.get();
+        return searches == 0 ? 0 : (double) hedges.get() / searches;
+    }
+
+    public double getWinRate() {
+        final long hedges = this.hedges.get();
+        return hedges == 0 ? 0 : (double) hedgeWins.get() / hedges;
+    }
+}
@@ -0,0 +1,172 @@
+package se.cygni.competence.rx.workshop;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import rx.Observable;
+import rx.schedulers.Timestamped;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for the path from a keystroke to the links it results in.
+ * <p>
+ * Recording is lock free and allocation free, so it can be done on the WebSocket and Netty threads.
+ * Every interval the recorded values are rolled into a snapshot which is readable through JMX
+ * (see {@link LatencyMetricsMXBean}) and written to the <code>metrics</code> {@link Log}.
+ */
+public class LatencyMetrics implements LatencyMetricsMXBean {
+
+    private static final Log LOG = Log.get("metrics");
+    private static LatencyMetrics defaultMetrics;
+
+    private static class Timer {
+        private final Recorder recorder = new Recorder(3);
+        private volatile Histogram last = new Histogram(3);
+
+        void record(long nanos) {
+            recorder.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        }
+
+        void roll() {
+            last = recorder.getIntervalHistogram();
+        }
+
+        LatencySnapshot snapshot() {
+            return new LatencySnapshot(last);
+        }
+    }
+
+    private final Timer endToEnd = new Timer();
+    private final Timer debounceWait = new Timer();
+    private final Map<String, Timer> upstream = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService roller;
+    private ObjectName registeredAs;
+
+    /**
+     * @param interval how often to roll the histograms into a new snapshot.
+     */
+    public LatencyMetrics(long interval, TimeUnit unit) {
+        roller = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "latency-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        roller.scheduleAtFixedRate(this::roll, interval, interval, unit);
+    }
+
+    /**
+     * @return the metrics shared by the server and the handlers, registered with the platform MBean server
+     * as <code>se.cygni.competence.rx.workshop:type=LatencyMetrics</code>. The interval is read from the system
+     * property <code>metrics.interval</code>, in seconds, and defaults to 60. Once closed, the next call
+     * returns new metrics.
+     */
+    public static synchronized LatencyMetrics getDefault() {
+        if (defaultMetrics == null) {
+            final LatencyMetrics metrics = new LatencyMetrics(Long.getLong("metrics.interval", 60), TimeUnit.SECONDS);
+            try {
+                final ObjectName name = new ObjectName("se.cygni.competence.rx.workshop:type=LatencyMetrics");
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+                metrics.registeredAs = name;
+            } catch (JMException e) {
+                metrics.close();
+                throw new RuntimeException(e);
+            }
+            defaultMetrics = metrics;
+        }
+        return defaultMetrics;
+    }
+
+    /**
+     * Stops rolling the histograms, and unregisters them from JMX if they were registered. Values recorded
+     * afterwards are not reported. The default metrics are shared by everything in the JVM, so only close
+     * them when all of it is done, e.g. in a test.
+     */
+    public void close() {
+        roller.shutdownNow();
+        synchronized (LatencyMetrics.class) {
+            if (registeredAs != null) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+                } catch (JMException e) {
+                    LOG.warn("Could not unregister " + registeredAs, e);
+                }
+                registeredAs = null;
+            }
+            if (defaultMetrics == this) {
+                defaultMetrics = null;
+            }
+        }
+    }
+
+    public void recordEndToEnd(long nanos) {
+        endToEnd.record(nanos);
+    }
+
+    public void recordUpstream(String client, long nanos) {
+        upstream.computeIfAbsent(client, c -> new Timer()).record(nanos);
+    }
+
+    /**
+     * Like {@link Observable#debounce(long, TimeUnit)}, but records how long each emitted item waited.
+     */
+    public <T> Observable.Transformer<T, T> debounce(long timeout, TimeUnit unit) {
+        return debounce(items -> items.debounce(timeout, unit));
+    }
+
+    /**
+     * Applies a debounce such as {@link AdaptiveDebounce#debounce()}, and records how long each emitted item waited.
+     */
+    public <T> Observable.Transformer<T, T> debounce(Observable.Transformer<Timestamped<T>, Timestamped<T>> debounce) {
+        return items -> items.timestamp()
+                .compose(debounce)
+                .map(timestamped -> {
+                    debounceWait.record(TimeUnit.MILLISECONDS.toNanos(
+                            System.currentTimeMillis() - timestamped.getTimestampMillis()));
+                    return timestamped.getValue();
+                });
+    }
+
+    private void roll() {
+        endToEnd.roll();
+        debounceWait.roll();
+        upstream.values().forEach(Timer::roll);
+        if (LOG.isInfoEnabled() && endToEnd.last.getTotalCount() > 0) {
+            LOG.info(getReport());
+        }
+    }
+
+    @Override
+    public LatencySnapshot getEndToEnd() {
+        return endToEnd.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getDebounceWait() {
+        return debounceWait.snapshot();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getUpstream() {
+        final Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        upstream.forEach((client, timer) -> snapshots.put(client, timer.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public String getReport() {
+        final StringBuilder report = new StringBuilder();
+        report.append("end to end:    ").append(getEndToEnd()).append(System.lineSeparator());
+        report.append("debounce wait: ").append(getDebounceWait());
+        getUpstream().forEach((client, snapshot) ->
+                report.append(System.lineSeparator()).append("upstream ").append(client).append(": ").append(snapshot));
+        return report.toString();
+    }
+}
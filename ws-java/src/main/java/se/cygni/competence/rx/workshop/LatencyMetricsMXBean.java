@@ -0,0 +1,25 @@
+package se.cygni.competence.rx.workshop;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link LatencyMetrics}. All values cover the last completed interval.
+ */
+public interface LatencyMetricsMXBean {
+    /**
+     * @return the time from the latest input event of a connection to the next links sent to it.
+     */
+    LatencySnapshot getEndToEnd();
+
+    /**
+     * @return the time search terms spent waiting in debounce.
+     */
+    LatencySnapshot getDebounceWait();
+
+    /**
+     * @return the time of upstream searches, by search client class.
+     */
+    Map<String, LatencySnapshot> getUpstream();
+
+    String getReport();
+}
@@ -0,0 +1,49 @@
+package se.cygni.competence.rx.workshop;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Locale;
+
+/**
+ * Percentiles of one latency histogram over one interval, in milliseconds.
+ */
+public class LatencySnapshot {
+    private final long count;
+    private final double p50;
+    private final double p99;
+    private final double p999;
+    private final double max;
+
+    LatencySnapshot(Histogram micros) {
+        count = micros.getTotalCount();
+        p50 = micros.getValueAtPercentile(50) / 1000.0;
+        p99 = micros.getValueAtPercentile(99) / 1000.0;
+        p999 = micros.getValueAtPercentile(99.9) / 1000.0;
+        max = micros.getMaxValue() / 1000.0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getP999() {
+        return p999;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "count=%d p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms", count, p50, p99, p999, max);
+    }
+}
@@ -0,0 +1,45 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maps each item to a request where only the latest request counts. When a new item arrives the
+ * request for the previous item is unsubscribed from, which for the search clients closes the
+ * underlying HTTP request. Results of superseded requests are never emitted, so they can't
+ * overwrite newer results.
+ * <p>
+ * Counts the requests which were cancelled this way before they completed.
+ */
+public class LatestWins {
+
+    private final AtomicLong cancelledRequests = new AtomicLong();
+
+    /**
+     * Like {@link Observable#switchMap(Func1)}, but counts cancelled requests.
+     */
+    public <T, R> Observable.Transformer<T, R> switchMap(Func1<? super T, ? extends Observable<? extends R>> request) {
+        return items -> items.switchMap(item -> counted(request.call(item)));
+    }
+
+    private <R> Observable<R> counted(Observable<R> request) {
+        final AtomicBoolean terminated = new AtomicBoolean();
+        return request
+                .doOnTerminate(() -> terminated.set(true))
+                .doOnUnsubscribe(() -> {
+                    if (terminated.compareAndSet(false, true)) {
+                        cancelledRequests.incrementAndGet();
+                    }
+                });
+    }
+
+    /**
+     * @return the number of requests which were unsubscribed from before they completed.
+     */
+    public long getCancelledRequests() {
+        return cancelledRequests.get();
+    }
+}
@@ -0,0 +1,59 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.Subscriber;
+import rx.subjects.PublishSubject;
+
+/**
+ * An input of a connection which costs next to nothing until a handler subscribes to it: the
+ * {@link PublishSubject} behind it is created on the first subscription. Like the subject, it drops
+ * events which arrive while nobody is subscribed.
+ */
+class LazyInput<T> implements Observable.OnSubscribe<T> {
+
+    private final Observable<T> observable = Observable.create(this);
+    private volatile PublishSubject<T> subject;
+    private volatile boolean completed;
+
+    Observable<T> asObservable() {
+        return observable;
+    }
+
+    @Override
+    public void call(Subscriber<? super T> subscriber) {
+        final PublishSubject<T> s = subject();
+        s.unsafeSubscribe(subscriber);
+        //A subscriber which arrived during completion still gets it, completing twice is a no-op
+        if (completed) {
+            s.onCompleted();
+        }
+    }
+
+    private PublishSubject<T> subject() {
+        PublishSubject<T> s = subject;
+        if (s == null) {
+            synchronized (this) {
+                s = subject;
+                if (s == null) {
+                    subject = s = PublishSubject.create();
+                }
+            }
+        }
+        return s;
+    }
+
+    void onNext(T event) {
+        final PublishSubject<T> s = subject;
+        if (s != null) {
+            s.onNext(event);
+        }
+    }
+
+    void onCompleted() {
+        completed = true;
+        final PublishSubject<T> s = subject;
+        if (s != null) {
+            s.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package se.cygni.competence.rx.workshop;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A log category with a level which can be changed at runtime.
+ * <p>
+ * Logging never blocks the calling thread. Enabled messages are put on a lock-free ring buffer
+ * and written to stdout (or stderr for warnings) by a background thread. If the buffer is full the
+ * message is dropped and counted instead. Disabled messages cost a volatile read, as long as
+ * callers check {@link #isDebugEnabled()} before building expensive messages:
+ * <pre>
+ * if (LOG.isDebugEnabled()) {
+ *     LOG.debug("message from " + address + ": " + s);
+ * }
+ * </pre>
+ * The initial level of a category is read from the system property <code>log.&lt;category&gt;</code>,
+ * for example <code>-Dlog.server=DEBUG</code>, and defaults to {@link Level#INFO}, also when the property
+ * doesn't name a level.
+ */
+public final class Log {
+
+    public enum Level {
+        DEBUG, INFO, WARN, OFF
+    }
+
+    private static final Map<String, Log> LOGS = new ConcurrentHashMap<>();
+    private static final int BUFFER_SIZE = 8192;
+    private static final RingBuffer BUFFER = new RingBuffer(BUFFER_SIZE);
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    static {
+        final Thread writer = new Thread(Log::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private final String category;
+    private final RingBuffer buffer;
+    private volatile Level level;
+
+    private Log(String category) {
+        this(category, BUFFER);
+    }
+
+    /**
+     * Creates a log which writes to the given buffer instead of the shared one, for tests.
+     */
+    Log(String category, RingBuffer buffer) {
+        this.category = category;
+        this.buffer = buffer;
+        final String property = System.getProperty("log." + category, Level.INFO.name());
+        try {
+            this.level = Level.valueOf(property.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            //Logs are created in static initializers, where throwing would take the whole class down
+            this.level = Level.INFO;
+            warn("Unknown level '" + property + "' in log." + category + ", using " + Level.INFO);
+        }
+    }
+
+    public static Log get(String category) {
+        return LOGS.computeIfAbsent(category, Log::new);
+    }
+
+    /**
+     * @return the number of messages dropped because the writer could not keep up.
+     */
+    public static long getDropped() {
+        return DROPPED.get();
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public boolean isInfoEnabled() {
+        return isEnabled(Level.INFO);
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0 && level != Level.OFF;
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, "WARN: " + message);
+    }
+
+    public void warn(String message, Throwable t) {
+        if (isEnabled(Level.WARN)) {
+            final StringWriter stackTrace = new StringWriter();
+            t.printStackTrace(new PrintWriter(stackTrace));
+            log(Level.WARN, "WARN: " + message + System.lineSeparator() + stackTrace);
+        }
+    }
+
+    private void log(Level level, String message) {
+        if (isEnabled(level) && !buffer.offer(new Record(level, message))) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            Record record = BUFFER.poll();
+            if (record == null) {
+                System.out.flush();
+                LockSupport.parkNanos(1_000_000);
+                continue;
+            }
+            do {
+                (record.level == Level.WARN ? System.err : System.out).println(record.message);
+                record = BUFFER.poll();
+            } while (record != null);
+        }
+    }
+
+    static class Record {
+        final Level level;
+        final String message;
+
+        Record(Level level, String message) {
+            this.level = level;
+            this.message = message;
+        }
+    }
+
+    /**
+     * A bounded multi-producer, single-consumer queue. Producers claim a slot with a CAS
+     * on the tail, the consumer frees it by advancing the head.
+     */
+    static class RingBuffer {
+        private final AtomicReferenceArray<Record> slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        RingBuffer(int capacity) {
+            if (Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+            }
+            slots = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+
+        boolean offer(Record record) {
+            while (true) {
+                final long t = tail.get();
+                if (t - head >= slots.length()) {
+                    return false;
+                }
+                if (tail.compareAndSet(t, t + 1)) {
+                    slots.lazySet((int) t & mask, record);
+                    return true;
+                }
+            }
+        }
+
+        Record poll() {
+            final int index = (int) head & mask;
+            final Record record = slots.get(index);
+            if (record != null) {
+                slots.lazySet(index, null);
+                head = head + 1;
+            }
+            return record;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Decodes inbound UI messages like <code>{"type":"query.input","text":"a"}</code> straight into
+ * calls on a {@link Listener}, using a streaming parser instead of building a tree.
+ * <p>
+ * A decoder holds no per-message state and can be shared between connections and threads.
+ */
+public class MessageDecoder {
+
+    /**
+     * Receives one callback per decoded message.
+     */
+    public interface Listener {
+        void onGoClick();
+
+        void onQueryInput(String text);
+
+        void onInstantEnable(boolean value);
+
+        void onEnterPress();
+
+        void onUnknown(String type);
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final JsonFactory factory;
+
+    public MessageDecoder() {
+        this(JSON);
+    }
+
+    public MessageDecoder(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    public void decode(String message, Listener listener) {
+        try (JsonParser parser = factory.createParser(message)) {
+            decode(parser, listener);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Decodes the remaining bytes of a binary frame without turning them into a {@link String}.
+     * The position of the buffer is left untouched.
+     */
+    public void decode(ByteBuffer message, Listener listener) {
+        try (JsonParser parser = createParser(message)) {
+            decode(parser, listener);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private JsonParser createParser(ByteBuffer message) throws IOException {
+        if (message.hasArray()) {
+            return factory.createParser(message.array(), message.arrayOffset() + message.position(), message.remaining());
+        }
+        return factory.createParser(new ByteBufferBackedInputStream(message.duplicate()));
+    }
+
+    private static void decode(JsonParser parser, Listener listener) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Expected a JSON object, got " + parser.getCurrentToken());
+        }
+        String type = null;
+        String text = null;
+        boolean value = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+            switch (field) {
+                case "type":
+                    type = parser.getValueAsString();
+                    break;
+                case "text":
+                    text = parser.getValueAsString();
+                    break;
+                case "value":
+                    value = parser.getValueAsBoolean();
+                    break;
+                default:
+                    if (token.isStructStart()) {
+                        parser.skipChildren();
+                    }
+            }
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Message has no type");
+        }
+        switch (type) {
+            case "go.click":
+                listener.onGoClick();
+                break;
+            case "query.input":
+                if (text == null) {
+                    throw new IllegalArgumentException("Message 'query.input' has no text");
+                }
+                listener.onQueryInput(text);
+                break;
+            case "instant.enable":
+                listener.onInstantEnable(value);
+                break;
+            case "enter.press":
+                listener.onEnterPress();
+                break;
+            default:
+                listener.onUnknown(type);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import rx.functions.Action1;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the messages written to one connection within a short window, and sends them as one
+ * <code>batch</code> frame, or as they are if there is just one.
+ * <p>
+ * The window starts with the first message after a send, so a message waits at most one window.
+ */
+class OutboundBatch {
+
+    private final ScheduledExecutorService scheduler;
+    private final long windowMicros;
+    private final OutboundStats stats;
+    private final Action1<ObjectNode> send;
+    private List<ObjectNode> pending;
+
+    OutboundBatch(ScheduledExecutorService scheduler, long windowMicros, OutboundStats stats, Action1<ObjectNode> send) {
+        this.scheduler = scheduler;
+        this.windowMicros = windowMicros;
+        this.stats = stats;
+        this.send = send;
+    }
+
+    synchronized void add(ObjectNode message) {
+        if (pending == null) {
+            pending = new ArrayList<>(4);
+            scheduler.schedule(this::flush, windowMicros, TimeUnit.MICROSECONDS);
+        }
+        pending.add(message);
+    }
+
+    void flush() {
+        final List<ObjectNode> messages;
+        synchronized (this) {
+            messages = pending;
+            pending = null;
+        }
+        if (messages == null) {
+            return;
+        }
+        if (messages.size() == 1) {
+            send.call(messages.get(0));
+        } else {
+            stats.onBatched(messages.size());
+            send.call(Util.createBatchMessage(messages));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.CloseFrame;
+import rx.functions.Action2;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+/**
+ * The outbound stage of one connection.
+ * <p>
+ * Messages are written straight away as long as the connection is below its limit of buffered
+ * frames and bytes. Above the limit, at most one links message and one status message are kept,
+ * the newest of each, and written in the order they arrived once the connection has drained
+ * below the limit again. A connection which stays above the limit for too long is disconnected.
+ */
+class OutboundQueue {
+
+    enum Kind {
+        LINKS, STATUS
+    }
+
+    private final WebSocket webSocket;
+    private final ServerOptions options;
+    private final OutboundStats stats;
+    private final Set<OutboundQueue> draining;
+    private final Action2<Kind, ObjectNode> writer;
+    private final ObjectNode[] pending = new ObjectNode[Kind.values().length];
+    private final long[] pendingOrder = new long[Kind.values().length];
+    private long offered;
+    private long overLimitSince = -1;
+
+    /**
+     * @param draining the queues waiting for their connection to drain. The queue adds itself while it
+     *                 has messages waiting, and removes itself once they are written.
+     */
+    OutboundQueue(WebSocket webSocket, ServerOptions options, OutboundStats stats, Set<OutboundQueue> draining,
+                  Action2<Kind, ObjectNode> writer) {
+        this.webSocket = webSocket;
+        this.options = options;
+        this.stats = stats;
+        this.draining = draining;
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the message, or keeps it until the connection drains if it is over its limit.
+     */
+    synchronized void offer(Kind kind, ObjectNode message) {
+        if (!hasPending() && isWritable()) {
+            writer.call(kind, message);
+            return;
+        }
+        if (pending[kind.ordinal()] != null) {
+            stats.onConflated();
+        }
+        pending[kind.ordinal()] = message;
+        pendingOrder[kind.ordinal()] = offered++;
+        draining.add(this);
+        drain(System.currentTimeMillis());
+    }
+
+    /**
+     * Writes the waiting messages if the connection has drained, or disconnects it if it has
+     * been over its limit for too long.
+     */
+    synchronized void drain(long now) {
+        if (!hasPending()) {
+            draining.remove(this);
+            return;
+        }
+        if (isWritable()) {
+            overLimitSince = -1;
+            final int first = pendingOrder[0] <= pendingOrder[1] ? 0 : 1;
+            write(first);
+            write(1 - first);
+            draining.remove(this);
+            return;
+        }
+        if (overLimitSince < 0) {
+            overLimitSince = now;
+        } else if (now - overLimitSince > options.getMaxStallMillis()) {
+            stats.onDisconnected();
+            discard();
+            webSocket.closeConnection(CloseFrame.POLICY_VALIDATION, "Outbound limit exceeded for too long");
+        }
+    }
+
+    /**
+     * Drops the waiting messages, for when the connection is closed.
+     */
+    synchronized void discard() {
+        pending[0] = null;
+        pending[1] = null;
+        draining.remove(this);
+    }
+
+    private void write(int kind) {
+        if (pending[kind] != null) {
+            writer.call(Kind.values()[kind], pending[kind]);
+            pending[kind] = null;
+        }
+    }
+
+    private boolean hasPending() {
+        return pending[0] != null || pending[1] != null;
+    }
+
+    /**
+     * @return the number of frames the library has buffered for writing to this connection.
+     */
+    int getBufferedFrames() {
+        return webSocket instanceof WebSocketImpl ? ((WebSocketImpl) webSocket).outQueue.size() : 0;
+    }
+
+    /**
+     * @return true if the connection is below its limit of buffered frames and bytes.
+     */
+    boolean isWritable() {
+        if (!(webSocket instanceof WebSocketImpl)) {
+            return true;
+        }
+        int frames = 0;
+        long bytes = 0;
+        for (ByteBuffer buffer : ((WebSocketImpl) webSocket).outQueue) {
+            if (++frames >= options.getMaxBufferedFrames()) {
+                return false;
+            }
+            bytes += buffer.remaining();
+        }
+        return bytes < options.getMaxBufferedBytes();
+    }
+}
@@ -0,0 +1,54 @@
+package se.cygni.competence.rx.workshop;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the outbound stage of all connections of a {@link Server}.
+ */
+public class OutboundStats {
+    private final AtomicLong conflatedFrames = new AtomicLong();
+    private final AtomicLong disconnectedClients = new AtomicLong();
+    private final AtomicLong batchFrames = new AtomicLong();
+    private final AtomicLong batchedMessages = new AtomicLong();
+
+    void onConflated() {
+        conflatedFrames.incrementAndGet();
+    }
+
+    void onDisconnected() {
+        disconnectedClients.incrementAndGet();
+    }
+
+    void onBatched(int messages) {
+        batchFrames.incrementAndGet();
+        batchedMessages.addAndGet(messages);
+    }
+
+    /**
+     * @return the number of frames replaced by a newer frame of the same kind before they were written.
+     */
+    public long getConflatedFrames() {
+        return conflatedFrames.get();
+    }
+
+    /**
+     * @return the number of connections closed because they stayed over the outbound limit.
+     */
+    public long getDisconnectedClients() {
+        return disconnectedClients.get();
+    }
+
+    /**
+     * @return the number of <code>batch</code> frames sent, each carrying several messages.
+     */
+    public long getBatchFrames() {
+        return batchFrames.get();
+    }
+
+    /**
+     * @return the number of messages sent in <code>batch</code> frames. Each batch saved all but one write.
+     */
+    public long getBatchedMessages() {
+        return batchedMessages.get();
+    }
+}
@@ -0,0 +1,21 @@
+package se.cygni.competence.rx.workshop;
+
+/**
+ * What to do with an event from a client when its {@link ReactiveConnectionHandler} hasn't requested it and
+ * the buffer for it is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Drops the oldest buffered event to make room. Suits inputs where only the latest state matters,
+     * like the query phrase.
+     */
+    DROP_OLDEST,
+    /**
+     * Drops the new event.
+     */
+    DROP_NEWEST,
+    /**
+     * Closes the connection.
+     */
+    DISCONNECT
+}
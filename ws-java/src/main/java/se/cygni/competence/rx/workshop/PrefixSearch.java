@@ -0,0 +1,209 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers instant searches from the results of earlier searches for a prefix of the same text.
+ * <p>
+ * While the user types "a", "ap", "apa" ..., each search is answered at once with the links of the
+ * longest prefix searched before, filtered to those whose title has a word starting with each word typed so far.
+ * Only when the text has been stable for the stability window is the search sent upstream, and
+ * the real result emitted after the filtered one. Unsubscribing before then, as a search replaced
+ * by the next keystroke is, means no upstream call at all.
+ * <p>
+ * Results are remembered per connection, in the {@link Session} returned by {@link #newSession()},
+ * and for all connections together. Search texts are compared in normalized form: trimmed, in lower case
+ * and with single spaces.
+ */
+public class PrefixSearch {
+
+    private static final int SESSION_ENTRIES = 32;
+
+    private final SearchClient delegate;
+    private final long stabilityMillis;
+    private final Scheduler scheduler;
+    private final PrefixCache global;
+    private final AtomicLong immediateAnswers = new AtomicLong();
+    private final AtomicLong upstreamSearches = new AtomicLong();
+
+    /**
+     * @param maxEntries      the number of results to remember for all connections together.
+     * @param stabilityWindow how long the search text must stay the same before it is sent upstream.
+     */
+    public PrefixSearch(SearchClient delegate, int maxEntries, long stabilityWindow, TimeUnit unit) {
+        this(delegate, maxEntries, stabilityWindow, unit, Schedulers.computation());
+    }
+
+    public PrefixSearch(SearchClient delegate, int maxEntries, long stabilityWindow, TimeUnit unit, Scheduler scheduler) {
+        this.delegate = delegate;
+        this.stabilityMillis = unit.toMillis(stabilityWindow);
+        this.scheduler = scheduler;
+        this.global = new PrefixCache(maxEntries);
+    }
+
+    /**
+     * @return a client for one connection, which remembers its own recent results besides the shared ones.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * A {@link SearchClient} for one connection. Its searches emit the answer from earlier results, if there is one,
+     * followed by the real result. The two are also available separately, for callers which show them differently.
+     */
+    public class Session implements SearchClient {
+        private final PrefixCache local = new PrefixCache(SESSION_ENTRIES);
+
+        @Override
+        public Observable<List<String>> searchRelated(String searchTerm) {
+            return cached(searchTerm).concatWith(upstream(searchTerm));
+        }
+
+        /**
+         * @return the links of earlier searches for the text or a prefix of it, filtered to the text, or nothing.
+         */
+        public Observable<List<String>> cached(String searchTerm) {
+            return Observable.defer(() -> {
+                final String key = normalize(searchTerm);
+                List<String> candidates = local.lookup(key);
+                if (candidates == null) {
+                    candidates = global.lookup(key);
+                }
+                if (candidates == null) {
+                    return Observable.<List<String>>empty();
+                }
+                immediateAnswers.incrementAndGet();
+                return Observable.just(candidates);
+            });
+        }
+
+        /**
+         * @return the real result, searched for once the text has been stable for the stability window.
+         */
+        public Observable<List<String>> upstream(String searchTerm) {
+            final String key = normalize(searchTerm);
+            return Observable.timer(stabilityMillis, TimeUnit.MILLISECONDS, scheduler)
+                    .flatMap(tick -> {
+                        upstreamSearches.incrementAndGet();
+                        return delegate.searchRelated(searchTerm);
+                    })
+                    .doOnNext(links -> {
+                        local.put(key, links);
+                        global.put(key, links);
+                    });
+        }
+    }
+
+    /**
+     * @return the number of searches answered at once from earlier results.
+     */
+    public long getImmediateAnswers() {
+        return immediateAnswers.get();
+    }
+
+    /**
+     * @return the number of searches which stayed stable long enough to be sent upstream.
+     */
+    public long getUpstreamSearches() {
+        return upstreamSearches.get();
+    }
+
+    static String normalize(String searchTerm) {
+        return searchTerm.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the title of a link such as <code>https://duckduckgo.com/Apache_Kafka</code>,
+     * normalized like a search text, i.e. "apache kafka".
+     */
+    static String title(String link) {
+        String title = link.substring(link.lastIndexOf('/') + 1);
+        try {
+            title = URLDecoder.decode(title, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            //Not percent encoded after all, keep it as it is
+        }
+        return normalize(title.replace('_', ' '));
+    }
+
+    /**
+     * @return the links whose title has a word starting with each word of the normalized search text.
+     */
+    static List<String> filter(List<String> links, String key) {
+        final String[] words = key.split(" ");
+        final List<String> rs = new ArrayList<>();
+        for (String link : links) {
+            if (matches(title(link).split(" "), words)) {
+                rs.add(link);
+            }
+        }
+        return rs;
+    }
+
+    private static boolean matches(String[] titleWords, String[] words) {
+        for (String word : words) {
+            boolean found = false;
+            for (String titleWord : titleWords) {
+                if (titleWord.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class PrefixCache {
+        private final Map<String, List<String>> entries;
+
+        PrefixCache(int maxEntries) {
+            entries = new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized void put(String key, List<String> links) {
+            entries.put(key, links);
+        }
+
+        /**
+         * @return the links of the key itself, or else the filtered links of its longest remembered prefix
+         * which leaves any, or null if there are none.
+         */
+        synchronized List<String> lookup(String key) {
+            final List<String> exact = entries.get(key);
+            if (exact != null) {
+                return exact;
+            }
+            for (int length = key.length() - 1; length > 0; length--) {
+                final List<String> links = entries.get(key.substring(0, length));
+                if (links != null) {
+                    final List<String> filtered = filter(links, key);
+                    if (!filtered.isEmpty()) {
+                        return filtered;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
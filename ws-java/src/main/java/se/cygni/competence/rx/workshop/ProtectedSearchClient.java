@@ -0,0 +1,118 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Protects a backend from more searches than it can handle, and users from waiting on a backend which is down.
+ * <p>
+ * Searches go through a {@link ConcurrencyLimit}, and then a {@link CircuitBreaker}. A search which either
+ * rejects fails at once with a {@link BackendUnavailableException}, without reaching the backend.
+ * Searches which fail or don't answer within the request timeout count as failures; searches which are
+ * unsubscribed from before they answer, e.g. because a newer search replaced them, count as neither.
+ * So the request timeout must be shorter than any deadline further up, like that of a
+ * {@link FederatedSearchClient}, or a slow backend is only ever cancelled and never counted as failing.
+ * <p>
+ * Use one instance per backend.
+ */
+public class ProtectedSearchClient implements SearchClient {
+
+    private final String name;
+    private final SearchClient delegate;
+    private final ConcurrencyLimit limit;
+    private final CircuitBreaker breaker;
+    private final long requestTimeoutMillis;
+    private final Scheduler scheduler;
+    private final AtomicLong limited = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+
+    /**
+     * Protects a backend with a concurrency limit between 1 and 100, starting at 10, and a breaker which
+     * opens for 10 seconds after 5 failures in a row.
+     */
+    public ProtectedSearchClient(String name, SearchClient delegate, long requestTimeout, TimeUnit unit) {
+        this(name, delegate, new ConcurrencyLimit(10, 1, 100), new CircuitBreaker(5, TimeUnit.SECONDS.toMillis(10)),
+                requestTimeout, unit, Schedulers.computation());
+    }
+
+    public ProtectedSearchClient(String name, SearchClient delegate, ConcurrencyLimit limit, CircuitBreaker breaker,
+                                 long requestTimeout, TimeUnit unit, Scheduler scheduler) {
+        this.name = name;
+        this.delegate = delegate;
+        this.limit = limit;
+        this.breaker = breaker;
+        this.requestTimeoutMillis = unit.toMillis(requestTimeout);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Observable<List<String>> searchRelated(String searchTerm) {
+        return Observable.defer(() -> {
+            if (!limit.tryAcquire()) {
+                limited.incrementAndGet();
+                return Observable.error(new BackendUnavailableException(name, "too many searches in flight"));
+            }
+            final long now = scheduler.now();
+            if (!breaker.allowRequest(now)) {
+                limit.onIgnored();
+                shortCircuited.incrementAndGet();
+                return Observable.error(new BackendUnavailableException(name,
+                        "retrying in " + TimeUnit.MILLISECONDS.toSeconds(breaker.getRetryInMillis(now) + 999) + "s"));
+            }
+            final long start = System.nanoTime();
+            final AtomicBoolean done = new AtomicBoolean();
+            return delegate.searchRelated(searchTerm)
+                    .timeout(requestTimeoutMillis, TimeUnit.MILLISECONDS, scheduler)
+                    .doOnNext(links -> {
+                        if (done.compareAndSet(false, true)) {
+                            limit.onSuccess(System.nanoTime() - start);
+                            breaker.onSuccess();
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (done.compareAndSet(false, true)) {
+                            limit.onDropped();
+                            breaker.onFailure(scheduler.now());
+                        }
+                    })
+                    .doOnUnsubscribe(() -> {
+                        if (done.compareAndSet(false, true)) {
+                            limit.onIgnored();
+                            breaker.onIgnored();
+                        }
+                    });
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ConcurrencyLimit getLimit() {
+        return limit;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    /**
+     * @return the number of searches rejected because the concurrency limit was reached.
+     */
+    public long getLimited() {
+        return limited.get();
+    }
+
+    /**
+     * @return the number of searches rejected because the circuit breaker was open.
+     */
+    public long getShortCircuited() {
+        return shortCircuited.get();
+    }
+}
@@ -0,0 +1,40 @@
+package se.cygni.competence.rx.workshop;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+
+import java.util.List;
+
+/**
+ * The <a href="http://www.reactive-streams.org/">Reactive Streams</a> counterpart of {@link ConnectionHandler},
+ * for handlers which want to control how fast events reach them.
+ * <p>
+ * The input {@link Publisher}s emit no more events than their subscriber has requested. Events which arrive
+ * from the client faster than that are buffered at the edge of the {@link Server}, up to a limit beyond which
+ * the {@link OverflowPolicy} of the {@link ServerOptions} applies. Each input accepts one subscriber, which must
+ * subscribe in {@link #onConnectionOpen}; the events of inputs which aren't subscribed to, or are cancelled,
+ * are discarded.
+ * <p>
+ * The output {@link Subscriber}s request as many items as the connection can take: while the client reads
+ * slower than the handler writes, they stop requesting, until the connection has drained. Subscribe them to
+ * the publishers of the handler's results; each accepts one subscription.
+ */
+public interface ReactiveConnectionHandler {
+    /**
+     * Notifies the handler that a new connection was opened. The inputs complete when the connection is closed.
+     *
+     * @param goClicks             emits an empty string whenever the "Go" button in the GUI is clicked.
+     * @param queryInputs          emits the complete query phrase whenever it is changed in the GUI.
+     * @param instantSearchChanges emits the "instant search" checkbox state whenever it changes.
+     * @param enterPresses         emits an empty string whenever the enter key is pressed in the search field.
+     * @param links                each list of URL strings it receives replaces the result list.
+     * @param status               each string it receives updates the "backend status" field.
+     */
+    void onConnectionOpen(
+            Publisher<String> goClicks,
+            Publisher<String> queryInputs,
+            Publisher<Boolean> instantSearchChanges,
+            Publisher<String> enterPresses,
+            Subscriber<List<String>> links,
+            Subscriber<String> status) throws Exception;
+}
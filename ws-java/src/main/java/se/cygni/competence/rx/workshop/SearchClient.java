@@ -0,0 +1,19 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+
+import java.util.List;
+
+/**
+ * A search backend which turns a search term into a list of links.
+ */
+public interface SearchClient {
+    /**
+     * Searches for links related to the given search term.
+     * The result is delivered as a {@link Observable} which will emit the result once the
+     * search completes, or emit an error if it fails.
+     * @param searchTerm the search term to search for
+     * @return an {@link Observable} emitting a single list of links.
+     */
+    Observable<List<String>> searchRelated(String searchTerm);
+}
@@ -0,0 +1,92 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Collapses concurrent searches for the same text, from any number of connections, into one upstream search.
+ * <p>
+ * While a search for a text is in flight, further searches for it, compared in the normalized form of
+ * {@link PrefixSearch}, subscribe to the one in flight and get its result. The upstream search is only
+ * cancelled when every subscriber has unsubscribed. Once it has its result, fails or is cancelled, the next
+ * search for the text goes upstream again, so results are never older than one search.
+ * <p>
+ * One instance is meant to be shared by all connections.
+ */
+public class SearchHub implements SearchClient {
+
+    private final SearchClient delegate;
+    private final Map<String, Observable<List<String>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong upstreamSearches = new AtomicLong();
+
+    public SearchHub(SearchClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Observable<List<String>> searchRelated(String searchTerm) {
+        return Observable.defer(() -> {
+            searches.incrementAndGet();
+            return join(PrefixSearch.normalize(searchTerm), searchTerm);
+        });
+    }
+
+    private Observable<List<String>> join(String key, String searchTerm) {
+        return inFlight.computeIfAbsent(key, k -> start(k, searchTerm));
+    }
+
+    private Observable<List<String>> start(String key, String searchTerm) {
+        final AtomicReference<Observable<List<String>>> shared = new AtomicReference<>();
+        final AtomicReference<List<String>> result = new AtomicReference<>();
+        final AtomicBoolean started = new AtomicBoolean();
+        final Runnable remove = () -> inFlight.remove(key, shared.get());
+        shared.set(Observable.defer(() -> {
+            if (!started.compareAndSet(false, true)) {
+                //Subscribed to after this search was over, which share() would otherwise run again outside the map
+                final List<String> links = result.get();
+                return links != null ? Observable.just(links) : join(key, searchTerm);
+            }
+            upstreamSearches.incrementAndGet();
+            return delegate.searchRelated(searchTerm);
+        })
+                //Leave the map before emitting, so that searches from now on don't join a search which is completing
+                .doOnNext(links -> {
+                    result.set(links);
+                    remove.run();
+                })
+                .doOnTerminate(remove::run)
+                .doOnUnsubscribe(remove::run)
+                .share());
+        return shared.get();
+    }
+
+    public long getSearches() {
+        return searches.get();
+    }
+
+    public long getUpstreamSearches() {
+        return upstreamSearches.get();
+    }
+
+    /**
+     * @return the fraction of searches which joined a search already in flight.
+     */
+    public double getCollapseRatio() {
+        final long searches = this.searches.get();
+        return searches == 0 ? 0 : 1 - (double) upstreamSearches.get() / searches;
+    }
+
+    /**
+     * @return the number of distinct texts being searched for upstream.
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,49 @@
+package se.cygni.competence.rx.workshop;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks one at a time and in the order they were submitted, on threads borrowed from a shared executor.
+ * <p>
+ * This is the mailbox of an actor: many serial executors can share a small pool, each running on at most
+ * one of its threads at a time. To be fair to the others, a serial executor gives its thread back after
+ * a batch of tasks and queues itself again if it has more. A task which throws is logged and skipped.
+ */
+public class SerialExecutor implements Executor {
+
+    private static final Log LOG = Log.get("server");
+    private static final int BATCH = 64;
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (pending.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        for (int i = 0; i < BATCH; i++) {
+            try {
+                tasks.poll().run();
+            } catch (Throwable t) {
+                LOG.warn("task failed", t);
+            }
+            if (pending.decrementAndGet() == 0) {
+                return;
+            }
+        }
+        executor.execute(this::drain);
+    }
+}
@@ -1,85 +1,382 @@
 package se.cygni.competence.rx.workshop;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.java_websocket.WebSocket;
 import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
-import rx.subjects.PublishSubject;
+import rx.Observable;
+import rx.Observer;
+import rx.functions.Func1;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Server extends WebSocketServer {
 
+    private static final Log LOG = Log.get("server");
+    private static final long DRAIN_INTERVAL_MILLIS = 10;
 
-    class ConnectionState {
-        private final PublishSubject<String> goClicks;
-        private final PublishSubject<String> queryInputs;
-        private final PublishSubject<List<String>> links;
-        private final PublishSubject<Boolean> instantSearchChanges;
-        private final PublishSubject<String> enterPresses;
-        private final PublishSubject<String> status;
+    /**
+     * An output of a connection, which writes what the handler pushes to it to the outbound queue.
+     */
+    private static class Output<T> implements Observer<T> {
+        private final OutboundQueue outbound;
+        private final OutboundQueue.Kind kind;
+        private final Func1<T, ObjectNode> toMessage;
 
-        public ConnectionState() {
-            goClicks = PublishSubject.create();
-            queryInputs = PublishSubject.create();
-            links = PublishSubject.create();
-            status = PublishSubject.create();
-            instantSearchChanges = PublishSubject.create();
-            enterPresses = PublishSubject.create();
+        Output(OutboundQueue outbound, OutboundQueue.Kind kind, Func1<T, ObjectNode> toMessage) {
+            this.outbound = outbound;
+            this.kind = kind;
+            this.toMessage = toMessage;
+        }
+
+        @Override
+        public void onNext(T item) {
+            outbound.offer(kind, toMessage.call(item));
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            LOG.warn(kind + " output failed", e);
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+
+    /**
+     * Everything the server keeps for a connection, attached to its {@link WebSocket}. Kept small for servers
+     * with many idle connections: inputs the handler doesn't subscribe to cost next to nothing, and outputs
+     * write straight to the outbound queue.
+     */
+    class ConnectionState implements MessageDecoder.Listener {
+        private final LazyInput<String> goClicks;
+        private final LazyInput<String> queryInputs;
+        private final LazyInput<Boolean> instantSearchChanges;
+        private final LazyInput<String> enterPresses;
+        private final Output<List<String>> links;
+        private final Output<String> status;
+        private final OutboundQueue outbound;
+        private final WireFormat format;
+        private final OutboundBatch batch;
+        private final Executor inbound;
+        private EdgeSubscriber<List<String>> linksSink;
+        private EdgeSubscriber<String> statusSink;
+        private volatile long lastInputNanos;
+
+        public ConnectionState(WebSocket webSocket, boolean batching) {
+            format = WireFormat.of(webSocket);
+            inbound = handlerPool != null ? new SerialExecutor(handlerPool) : Runnable::run;
+            batch = batching ? new OutboundBatch(drainer, options.getBatchWindowMicros(), outboundStats, message -> {
+                //Batched links reach the client when the batch is flushed, not when they are added
+                if (hasLinks(message)) {
+                    recordEndToEnd();
+                }
+                if (webSocket.isOpen()) {
+                    send(webSocket, format, message);
+                }
+            }) : null;
+            goClicks = new LazyInput<>();
+            queryInputs = new LazyInput<>();
+            instantSearchChanges = new LazyInput<>();
+            enterPresses = new LazyInput<>();
+            outbound = new OutboundQueue(webSocket, options, outboundStats, draining, (kind, message) -> {
+                if (batch != null) {
+                    batch.add(message);
+                    return;
+                }
+                if (kind == OutboundQueue.Kind.LINKS) {
+                    recordEndToEnd();
+                }
+                if (webSocket.isOpen()) {
+                    send(webSocket, format, message);
+                }
+            });
+            links = new Output<>(outbound, OutboundQueue.Kind.LINKS, Util::createLinksMessage);
+            status = new Output<>(outbound, OutboundQueue.Kind.STATUS, Util::createStatusMessage);
+        }
+
+        private void complete() {
+            goClicks.onCompleted();
+            queryInputs.onCompleted();
+            instantSearchChanges.onCompleted();
+            enterPresses.onCompleted();
+        }
+
+        private void recordEndToEnd() {
+            final long since = lastInputNanos;
+            if (since != 0) {
+                lastInputNanos = 0;
+                latencyMetrics.recordEndToEnd(System.nanoTime() - since);
+            }
+        }
+
+        @Override
+        public void onGoClick() {
+            lastInputNanos = System.nanoTime();
+            inbound.execute(() -> goClicks.onNext(""));
+        }
+
+        @Override
+        public void onQueryInput(String text) {
+            lastInputNanos = System.nanoTime();
+            inbound.execute(() -> queryInputs.onNext(text));
+        }
+
+        @Override
+        public void onInstantEnable(boolean value) {
+            inbound.execute(() -> instantSearchChanges.onNext(value));
+        }
+
+        @Override
+        public void onEnterPress() {
+            lastInputNanos = System.nanoTime();
+            inbound.execute(() -> enterPresses.onNext(""));
+        }
+
+        @Override
+        public void onUnknown(String type) {
+            LOG.warn("Unknown message type '" + type + "'");
         }
     }
 
-    private final Map<WebSocket, ConnectionState> stateBySocket;
     private final ConnectionHandler handler;
+    private final ReactiveConnectionHandler reactiveHandler;
+    private final MessageDecoder textDecoder;
+    private final ServerOptions options;
+    private final OutboundStats outboundStats;
+    private final Set<OutboundQueue> draining;
+    private final ScheduledExecutorService drainer;
+    private final LatencyMetrics latencyMetrics;
+    private final CompressionStats compressionStats;
+    private final ExecutorService handlerPool;
+    private final Set<EdgeSubscriber<?>> starved;
+    private final AtomicLong droppedInputs = new AtomicLong();
 
     public Server(final ConnectionHandler handler) throws UnknownHostException {
         this(4739, handler);
     }
 
     public Server(int port, final ConnectionHandler handler) throws UnknownHostException {
-        super(new InetSocketAddress(port));
+        this(port, handler, new ServerOptions());
+    }
+
+    public Server(int port, final ConnectionHandler handler, ServerOptions options) throws UnknownHostException {
+        this(port, handler, null, options, new CompressionStats());
+    }
+
+    /**
+     * Creates a server for a handler with backpressure. Events which the handler hasn't requested are buffered
+     * as configured by {@link ServerOptions#withInboundBuffer(int, OverflowPolicy)}.
+     */
+    public Server(int port, final ReactiveConnectionHandler handler, ServerOptions options) throws UnknownHostException {
+        this(port, null, handler, options, new CompressionStats());
+    }
+
+    private Server(int port, ConnectionHandler handler, ReactiveConnectionHandler reactiveHandler, ServerOptions options,
+                   CompressionStats compressionStats) {
+        super(new InetSocketAddress(port), options.getDecoderThreads(), Collections.singletonList(
+                new Draft_6455(extensions(options, compressionStats), WireFormat.protocols())));
         Thread.setDefaultUncaughtExceptionHandler((t, e) -> e.printStackTrace());
         WebSocketImpl.DEBUG = false;
         this.handler = handler;
-        stateBySocket = new ConcurrentHashMap<>();
+        this.reactiveHandler = reactiveHandler;
+        this.options = options;
+        this.compressionStats = compressionStats;
+        textDecoder = WireFormat.JSON.getDecoder();
+        outboundStats = new OutboundStats();
+        latencyMetrics = options.getLatencyMetrics();
+        draining = ConcurrentHashMap.newKeySet();
+        starved = ConcurrentHashMap.newKeySet();
+        drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "outbound-drainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        drainer.scheduleWithFixedDelay(this::drainOutbound, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        handlerPool = options.getHandlerExecutor() != null ? options.getHandlerExecutor() : handlerPool(options.getHandlerThreads());
+    }
+
+    private static ExecutorService handlerPool(int handlerThreads) {
+        return handlerThreads > 0 ? Executors.newFixedThreadPool(handlerThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "handler-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }) : null;
+    }
+
+    private static List<IExtension> extensions(ServerOptions options, CompressionStats compressionStats) {
+        if (!options.isCompression()) {
+            return Collections.emptyList();
+        }
+        return Collections.<IExtension>singletonList(new CountingDeflateExtension(compressionStats,
+                options.getCompressionThreshold(), options.isContextTakeover()));
+    }
+
+    private void drainOutbound() {
+        final long now = System.currentTimeMillis();
+        for (OutboundQueue queue : draining) {
+            queue.drain(now);
+        }
+        for (EdgeSubscriber<?> sink : starved) {
+            sink.requestMore();
+        }
     }
 
     @Override
     public void onOpen(WebSocket webSocket, ClientHandshake clientHandshake) {
-        System.out.println("connect from " + Util.getAddress(webSocket));
-        ConnectionState state = new ConnectionState();
-        state.links.subscribe(links -> {
-            send(webSocket, Util.createLinksMessage(links));
+        ConnectionState state = new ConnectionState(webSocket, isBatchRequested(clientHandshake));
+        if (LOG.isInfoEnabled()) {
+            LOG.info("connect from " + Util.getAddress(webSocket) + " using " + state.format + (state.batch != null ? ", batched" : ""));
+        }
+        if (reactiveHandler != null) {
+            openReactive(webSocket, state);
+            return;
+        }
+        webSocket.setAttachment(state);
+        openPipeline(webSocket, state, () -> {
+            handler.onConnectionOpen(state.goClicks.asObservable(), state.queryInputs.asObservable(),
+                    state.instantSearchChanges.asObservable(), state.enterPresses.asObservable(), state.links, state.status);
+            return null;
         });
-        state.status.subscribe(status -> {
-            send(webSocket, Util.createStatusMessage(status));
+    }
+
+    /**
+     * Sets up the handler pipeline through the same executor as the events, so that it is in place before the
+     * first one. A connection whose pipeline fails to set up is closed, instead of staying open without one.
+     */
+    private void openPipeline(WebSocket webSocket, ConnectionState state, Callable<?> open) {
+        state.inbound.execute(() -> {
+            try {
+                open.call();
+            } catch (Exception e) {
+                onError(webSocket, e);
+                webSocket.close(CloseFrame.UNEXPECTED_CONDITION, "Could not open connection handler");
+            }
         });
-        stateBySocket.put(webSocket, state);
-        try {
-            handler.onConnectionOpen(state.goClicks, state.queryInputs, state.instantSearchChanges, state.enterPresses, state.links, state.status);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    }
+
+    private void openReactive(WebSocket webSocket, ConnectionState state) {
+        final EdgePublisher<String> goClicks = edge(webSocket, state.goClicks.asObservable());
+        final EdgePublisher<String> queryInputs = edge(webSocket, state.queryInputs.asObservable());
+        final EdgePublisher<Boolean> instantSearchChanges = edge(webSocket, state.instantSearchChanges.asObservable());
+        final EdgePublisher<String> enterPresses = edge(webSocket, state.enterPresses.asObservable());
+        state.linksSink = new EdgeSubscriber<>(state.outbound, OutboundQueue.Kind.LINKS, Util::createLinksMessage,
+                options.getMaxBufferedFrames(), starved);
+        state.statusSink = new EdgeSubscriber<>(state.outbound, OutboundQueue.Kind.STATUS, Util::createStatusMessage,
+                options.getMaxBufferedFrames(), starved);
+        webSocket.setAttachment(state);
+        openPipeline(webSocket, state, () -> {
+            reactiveHandler.onConnectionOpen(goClicks, queryInputs, instantSearchChanges, enterPresses, state.linksSink, state.statusSink);
+            //The events of inputs the handler ignores must not fill their buffers and disconnect the client
+            goClicks.ignoreUnlessSubscribed();
+            queryInputs.ignoreUnlessSubscribed();
+            instantSearchChanges.ignoreUnlessSubscribed();
+            enterPresses.ignoreUnlessSubscribed();
+            return null;
+        });
+    }
+
+    private <T> EdgePublisher<T> edge(WebSocket webSocket, Observable<T> events) {
+        final EdgePublisher<T> edge = new EdgePublisher<>(options.getInboundBufferSize(), options.getOverflowPolicy(),
+                droppedInputs::incrementAndGet);
+        events.subscribe(event -> {
+            if (!edge.offer(event)) {
+                webSocket.closeConnection(CloseFrame.POLICY_VALIDATION, "Inbound buffer overflow");
+            }
+        }, e -> edge.complete(), edge::complete);
+        return edge;
+    }
+
+    /**
+     * @return true if the message is a <code>new.links</code> message, or a batch holding one.
+     */
+    static boolean hasLinks(ObjectNode message) {
+        final String type = message.path("type").asText();
+        if (type.equals("batch")) {
+            for (JsonNode batched : message.path("messages")) {
+                if (batched.path("type").asText().equals("new.links")) {
+                    return true;
+                }
+            }
+            return false;
         }
+        return type.equals("new.links");
     }
 
-    private void send(WebSocket webSocket, ObjectNode jsonMessage) {
-        String jsonString = Util.toString(jsonMessage);
-        System.out.println("sending to " + Util.getAddress(webSocket) + " :" + jsonString);
-        webSocket.send(jsonString);
+    /**
+     * @return true if the client connected with the query parameter <code>batch=1</code>.
+     */
+    static boolean isBatchRequested(ClientHandshake clientHandshake) {
+        if (clientHandshake == null) {
+            return false;
+        }
+        final String descriptor = clientHandshake.getResourceDescriptor();
+        final int query = descriptor.indexOf('?');
+        if (query < 0) {
+            return false;
+        }
+        for (String parameter : descriptor.substring(query + 1).split("&")) {
+            if (parameter.equals("batch=1")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void send(WebSocket webSocket, WireFormat format, ObjectNode message) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("sending to " + Util.getAddress(webSocket) + " as " + format + ": " + Util.toString(message));
+        }
+        try {
+            format.send(webSocket, message);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
     public void onClose(WebSocket webSocket, int i, String s, boolean b) {
-        System.out.println("close from " + Util.getAddress(webSocket));
-        stateBySocket.remove(webSocket);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("close from " + Util.getAddress(webSocket));
+        }
+        final ConnectionState state = webSocket.getAttachment();
+        if (state != null) {
+            state.outbound.discard();
+            if (state.linksSink != null) {
+                state.linksSink.cancel();
+                state.statusSink.cancel();
+            }
+            state.inbound.execute(state::complete);
+        }
     }
 
     @Override
@@ -87,41 +384,78 @@ public class Server extends WebSocketServer {
         onMessageInternal(webSocket, s);
     }
 
-    private void onMessageInternal(WebSocket webSocket, String s) {
-        System.out.println("message from " + Util.getAddress(webSocket) + ": " + s);
-        ConnectionState state = stateBySocket.get(webSocket);
-        JsonNode message = Util.toJson(s);
-        String type = message.get("type").textValue();
-        switch (type) {
-            case "go.click":
-                state.goClicks.onNext("");
-                break;
-            case "query.input":
-                state.queryInputs.onNext(message.get("text").textValue());
-                break;
-            case "instant.enable":
-                state.instantSearchChanges.onNext(message.get("value").asBoolean());
-                break;
-            case "enter.press":
-                state.enterPresses.onNext("");
-                break;
-            default:
-                System.out.println("WARN: Unknown message type '" + type + "': '" + s + "'");
+    @Override
+    public void onMessage(WebSocket webSocket, ByteBuffer bytes) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("binary message from " + Util.getAddress(webSocket) + ": " + bytes.remaining() + " bytes");
+        }
+        final ConnectionState state = webSocket.getAttachment();
+        state.format.getDecoder().decode(bytes, state);
+    }
+
+    void onMessageInternal(WebSocket webSocket, String s) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("message from " + Util.getAddress(webSocket) + ": " + s);
         }
+        textDecoder.decode(s, webSocket.<ConnectionState>getAttachment());
+    }
+
+    public OutboundStats getOutboundStats() {
+        return outboundStats;
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    /**
+     * @return the number of events from clients of a {@link ReactiveConnectionHandler} which were dropped by
+     * the {@link OverflowPolicy}, because the handler hadn't requested them and their buffer was full.
+     */
+    public long getDroppedInputs() {
+        return droppedInputs.get();
+    }
+
+    /**
+     * @return the number of frames buffered for writing, summed over all connections.
+     */
+    public long getBufferedFrames() {
+        long frames = 0;
+        for (WebSocket webSocket : getConnections()) {
+            final ConnectionState state = webSocket.getAttachment();
+            if (state != null) {
+                frames += state.outbound.getBufferedFrames();
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * @return the number of connections which are over their outbound limit and have messages waiting.
+     */
+    public int getDrainingConnections() {
+        return draining.size();
     }
 
     @Override
-    public void onError(WebSocket webSocket, Exception e) {
-        if (webSocket != null) {
-            System.err.println("error:" + Util.getAddress(webSocket));
+    public void stop(int timeout) throws InterruptedException {
+        drainer.shutdownNow();
+        //Closing the connections hands their completion to the handler pool, so shut it down after
+        super.stop(timeout);
+        if (handlerPool != null) {
+            handlerPool.shutdownNow();
         }
-        e.printStackTrace(System.err);
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Exception e) {
+        LOG.warn("error:" + (webSocket != null ? Util.getAddress(webSocket) : "server"), e);
     }
 
     static void startAndServe(ConnectionHandler handler) throws UnknownHostException, InterruptedException {
         final Server s = new Server(handler);
         s.start();
-        System.out.println("Server started");
+        LOG.info("Server started");
         final CountDownLatch shuttingDown = new CountDownLatch(1);
         Runtime.getRuntime().addShutdownHook(new Thread(shuttingDown::countDown));
         shuttingDown.await();
@@ -0,0 +1,177 @@
+package se.cygni.competence.rx.workshop;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tuning options for a {@link Server}. The defaults suit the workshop UI.
+ */
+public class ServerOptions {
+
+    private int maxBufferedFrames = 16;
+    private int maxBufferedBytes = 1 << 20;
+    private long maxStallMillis = TimeUnit.SECONDS.toMillis(30);
+    private LatencyMetrics latencyMetrics;
+    private boolean compression;
+    private int compressionThreshold = 256;
+    private boolean contextTakeover;
+    private long batchWindowMicros = TimeUnit.MILLISECONDS.toMicros(5);
+    private int decoderThreads = Runtime.getRuntime().availableProcessors();
+    private int handlerThreads;
+    private ExecutorService handlerExecutor;
+    private int inboundBufferSize = 16;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * Limits how much may be queued for writing to a connection. While a connection is over the
+     * limit, only the newest links and the newest status are kept for it. A connection which stays
+     * over the limit for longer than <code>maxStall</code> is disconnected.
+     */
+    public ServerOptions withOutboundLimit(int maxBufferedFrames, int maxBufferedBytes, long maxStall, TimeUnit unit) {
+        this.maxBufferedFrames = maxBufferedFrames;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.maxStallMillis = unit.toMillis(maxStall);
+        return this;
+    }
+
+    /**
+     * Sets where to record end to end latency. Defaults to {@link LatencyMetrics#getDefault()}.
+     * The server doesn't close the metrics when it is stopped, as they may be shared, e.g. with a
+     * {@link TimedSearchClient}; whoever created them closes them.
+     */
+    public ServerOptions withLatencyMetrics(LatencyMetrics latencyMetrics) {
+        this.latencyMetrics = latencyMetrics;
+        return this;
+    }
+
+    /**
+     * Offers the permessage-deflate extension, which compresses frames with payloads of at least
+     * <code>threshold</code> bytes for clients which accept it. Off by default.
+     * <p>
+     * Each connection gets its own copy of the extension, with its own deflater and inflater, which hold a few
+     * hundred kilobytes of native zlib memory whether or not the client accepts the extension. This memory is
+     * outside the heap, so it doesn't show in heap measurements like those of <code>ConnectionFootprint</code>,
+     * but it dominates the cost of an idle connection.
+     * @param contextTakeover whether to keep the compression context of each connection between messages,
+     *                        so that text repeated across messages, like URL prefixes, compresses well.
+     */
+    public ServerOptions withCompression(int threshold, boolean contextTakeover) {
+        this.compression = true;
+        this.compressionThreshold = threshold;
+        this.contextTakeover = contextTakeover;
+        return this;
+    }
+
+    /**
+     * Turns compression off again, which is the default.
+     */
+    public ServerOptions withoutCompression() {
+        this.compression = false;
+        return this;
+    }
+
+    /**
+     * Sets how long to collect messages for clients which connect with <code>?batch=1</code>, before
+     * sending them as one <code>batch</code> frame. Defaults to 5 ms.
+     */
+    public ServerOptions withBatchWindow(long window, TimeUnit unit) {
+        this.batchWindowMicros = unit.toMicros(window);
+        return this;
+    }
+
+    /**
+     * Sets the number of threads which read and decode WebSocket frames. Defaults to the number of cores.
+     */
+    public ServerOptions withDecoderThreads(int decoderThreads) {
+        this.decoderThreads = decoderThreads;
+        return this;
+    }
+
+    /**
+     * Hands the inbound events of each connection to the {@link ConnectionHandler} on a pool of the given
+     * number of threads, instead of on the thread which decoded them, so that slow handler pipelines don't
+     * hold up reading other connections. The events of a connection are still handled one at a time and
+     * in order. By default, events are handled on the decoding thread.
+     */
+    public ServerOptions withHandlerThreads(int handlerThreads) {
+        this.handlerThreads = handlerThreads;
+        return this;
+    }
+
+    /**
+     * Like {@link #withHandlerThreads(int)}, but hands inbound events to the given executor, e.g. one which
+     * starts a virtual thread per task. The server shuts the executor down when it is stopped.
+     */
+    public ServerOptions withHandlerExecutor(ExecutorService handlerExecutor) {
+        this.handlerExecutor = handlerExecutor;
+        return this;
+    }
+
+    /**
+     * Sets how many events of each input to buffer for a {@link ReactiveConnectionHandler} which hasn't
+     * requested them, and what to do with further events. Defaults to 16, dropping the oldest.
+     */
+    public ServerOptions withInboundBuffer(int size, OverflowPolicy overflowPolicy) {
+        this.inboundBufferSize = size;
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    public int getMaxBufferedFrames() {
+        return maxBufferedFrames;
+    }
+
+    public int getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    public long getMaxStallMillis() {
+        return maxStallMillis;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public boolean isContextTakeover() {
+        return contextTakeover;
+    }
+
+    public long getBatchWindowMicros() {
+        return batchWindowMicros;
+    }
+
+    public int getDecoderThreads() {
+        return decoderThreads;
+    }
+
+    /**
+     * @return the number of threads to handle inbound events on, or 0 to handle them on the decoding thread.
+     */
+    public int getHandlerThreads() {
+        return handlerThreads;
+    }
+
+    /**
+     * @return the executor set by {@link #withHandlerExecutor(ExecutorService)}, or null.
+     */
+    public ExecutorService getHandlerExecutor() {
+        return handlerExecutor;
+    }
+
+    public int getInboundBufferSize() {
+        return inboundBufferSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public LatencyMetrics getLatencyMetrics() {
+        return latencyMetrics != null ? latencyMetrics : LatencyMetrics.getDefault();
+    }
+}
@@ -0,0 +1,194 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.observables.ConnectableObservable;
+import rx.schedulers.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts searching for instant search text before the debounce has decided that the user stopped typing.
+ * <p>
+ * Once the text has been stable for the settle time, which is shorter than the debounce, a speculative
+ * search is started for it. When the debounced search for the same text comes, it adopts the speculative
+ * search, whether still in flight or completed, instead of starting a new one. A speculative search for
+ * text the user went on to change is cancelled, and counted as wasted.
+ * <p>
+ * There is no way to give upstream requests a lower priority, so speculative searches are kept from
+ * crowding out real ones by a limit on how many may be in flight for all connections together.
+ * Beyond it, no speculation is done.
+ */
+public class SpeculativePrefetch {
+
+    private final SearchClient delegate;
+    private final long settleMillis;
+    private final int maxInFlight;
+    private final Scheduler scheduler;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong prefetches = new AtomicLong();
+    private final AtomicLong adopted = new AtomicLong();
+    private final AtomicLong wasted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong savedMillis = new AtomicLong();
+
+    /**
+     * @param settle      how long text must be stable before it is searched speculatively.
+     * @param maxInFlight the maximum number of speculative searches in flight, for all connections together.
+     */
+    public SpeculativePrefetch(SearchClient delegate, long settle, TimeUnit unit, int maxInFlight) {
+        this(delegate, settle, unit, maxInFlight, Schedulers.computation());
+    }
+
+    public SpeculativePrefetch(SearchClient delegate, long settle, TimeUnit unit, int maxInFlight, Scheduler scheduler) {
+        this.delegate = delegate;
+        this.settleMillis = unit.toMillis(settle);
+        this.maxInFlight = maxInFlight;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return the speculative searches for one connection.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * A {@link SearchClient} for one connection, which adopts the speculative search for the same text if there is one.
+     */
+    public class Session implements SearchClient {
+        private Speculation current;
+
+        /**
+         * Searches speculatively for each text which stays stable for the settle time.
+         * @param text the instant search text, before debounce.
+         */
+        public Subscription speculate(Observable<String> text) {
+            return text.debounce(settleMillis, TimeUnit.MILLISECONDS, scheduler).subscribe(this::start);
+        }
+
+        private synchronized void start(String searchTerm) {
+            if (current != null) {
+                if (current.searchTerm.equals(searchTerm)) {
+                    return;
+                }
+                current.cancel();
+                current = null;
+            }
+            if (inFlight.incrementAndGet() > maxInFlight) {
+                inFlight.decrementAndGet();
+                skipped.incrementAndGet();
+                return;
+            }
+            prefetches.incrementAndGet();
+            current = new Speculation(searchTerm);
+        }
+
+        @Override
+        public Observable<List<String>> searchRelated(String searchTerm) {
+            return Observable.defer(() -> {
+                final Speculation speculation;
+                synchronized (this) {
+                    speculation = current;
+                    current = null;
+                }
+                if (speculation != null) {
+                    if (speculation.searchTerm.equals(searchTerm)) {
+                        return speculation.adopt();
+                    }
+                    speculation.cancel();
+                }
+                return delegate.searchRelated(searchTerm);
+            });
+        }
+    }
+
+    private class Speculation {
+        private final String searchTerm;
+        private final long startMillis = scheduler.now();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final ConnectableObservable<List<String>> result;
+        private final Subscription connection;
+        private volatile long doneMillis;
+
+        Speculation(String searchTerm) {
+            this.searchTerm = searchTerm;
+            result = delegate.searchRelated(searchTerm)
+                    .doOnTerminate(() -> {
+                        doneMillis = scheduler.now();
+                        release();
+                    })
+                    .replay(1);
+            connection = result.connect();
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * @return the result, which is cancelled if unsubscribed from before it completes.
+         */
+        Observable<List<String>> adopt() {
+            final long done = doneMillis;
+            savedMillis.addAndGet((done != 0 ? done : scheduler.now()) - startMillis);
+            adopted.incrementAndGet();
+            return result.doOnUnsubscribe(this::cancelSilently);
+        }
+
+        void cancel() {
+            wasted.incrementAndGet();
+            cancelSilently();
+        }
+
+        private void cancelSilently() {
+            connection.unsubscribe();
+            release();
+        }
+    }
+
+    public long getPrefetches() {
+        return prefetches.get();
+    }
+
+    /**
+     * @return the number of speculative searches used by the search they anticipated.
+     */
+    public long getAdopted() {
+        return adopted.get();
+    }
+
+    /**
+     * @return the number of speculative searches cancelled because the text changed.
+     */
+    public long getWasted() {
+        return wasted.get();
+    }
+
+    /**
+     * @return the number of speculative searches not started because of the in-flight limit.
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public double getWastedRatio() {
+        final long prefetches = this.prefetches.get();
+        return prefetches == 0 ? 0 : (double) wasted.get() / prefetches;
+    }
+
+    /**
+     * @return the total time adopted searches had been running, or had completed in, when they were adopted.
+     */
+    public long getSavedMillis() {
+        return savedMillis.get();
+    }
+}
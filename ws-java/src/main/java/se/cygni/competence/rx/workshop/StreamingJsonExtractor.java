@@ -0,0 +1,137 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the string values found at a given path in a JSON document which is fed
+ * to it chunk by chunk, as the chunks arrive from the network.
+ * <p>
+ * The document is never held in memory as a whole. Each chunk is parsed as far as possible
+ * before {@link #feed} returns, so the caller is free to release or reuse it afterwards.
+ * <p>
+ * A path is a list of field names, where {@link #ANY} matches any field name or array element.
+ * For example <code>"RelatedTopics", ANY, "FirstURL"</code> matches the <code>FirstURL</code> of
+ * every element in the <code>RelatedTopics</code> array. An extractor handles a single document
+ * and is not thread safe.
+ */
+public class StreamingJsonExtractor {
+
+    public static final String ANY = "*";
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final String[] path;
+    private final String[] segments;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final List<String> values;
+    private byte[] chunk;
+    private int depth;
+
+    public StreamingJsonExtractor(String... path) {
+        this.path = path;
+        this.segments = new String[path.length];
+        this.values = new ArrayList<>();
+        this.chunk = new byte[0];
+        try {
+            parser = JSON.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Parses the readable bytes of the given buffer. The buffer is not retained and its
+     * reader index is left untouched.
+     */
+    public void feed(ByteBuf buf) {
+        final int length = buf.readableBytes();
+        if (buf.hasArray()) {
+            feed(buf.array(), buf.arrayOffset() + buf.readerIndex(), length);
+        } else {
+            if (chunk.length < length) {
+                chunk = new byte[length];
+            }
+            buf.getBytes(buf.readerIndex(), chunk, 0, length);
+            feed(chunk, 0, length);
+        }
+    }
+
+    public void feed(byte[] bytes, int offset, int length) {
+        try {
+            feeder.feedInput(bytes, offset, offset + length);
+            drain();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Signals the end of the document and returns the values found in it, in document order.
+     */
+    public List<String> finish() {
+        feeder.endOfInput();
+        try {
+            drain();
+            parser.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return values;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT:
+                    depth++;
+                    break;
+                case START_ARRAY:
+                    depth++;
+                    setSegment(null);
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                case FIELD_NAME:
+                    setSegment(parser.getCurrentName());
+                    break;
+                case VALUE_STRING:
+                    if (matches()) {
+                        values.add(parser.getText());
+                    }
+                    break;
+                default:
+            }
+        }
+    }
+
+    private void setSegment(String name) {
+        if (depth <= segments.length) {
+            segments[depth - 1] = name;
+        }
+    }
+
+    private boolean matches() {
+        if (depth != path.length) {
+            return false;
+        }
+        for (int i = 0; i < path.length; i++) {
+            if (!ANY.equals(path[i]) && !path[i].equals(segments[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the time of each search of another {@link SearchClient} in {@link LatencyMetrics},
+ * under the class name of the client. Also keeps a moving average of recent search times.
+ */
+public class TimedSearchClient implements SearchClient {
+
+    private final SearchClient delegate;
+    private final LatencyMetrics metrics;
+    private final String name;
+    private volatile long recentMillis;
+
+    public TimedSearchClient(SearchClient delegate, LatencyMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.name = delegate.getClass().getSimpleName();
+    }
+
+    @Override
+    public Observable<List<String>> searchRelated(String searchTerm) {
+        return Observable.defer(() -> {
+            final long start = System.nanoTime();
+            return delegate.searchRelated(searchTerm)
+                    .doOnNext(links -> {
+                        final long nanos = System.nanoTime() - start;
+                        metrics.recordUpstream(name, nanos);
+                        //Racing updates may lose a sample, which an average can afford
+                        recentMillis += (TimeUnit.NANOSECONDS.toMillis(nanos) - recentMillis) / 4;
+                    });
+        });
+    }
+
+    /**
+     * @return a moving average of the latest search times, in milliseconds.
+     */
+    public long getRecentMillis() {
+        return recentMillis;
+    }
+}
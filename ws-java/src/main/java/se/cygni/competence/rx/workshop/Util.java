@@ -61,6 +61,15 @@ public class Util {
         return msg;
     }
 
+    /**
+     * @return a message carrying several messages, to be handled in order.
+     */
+    public static ObjectNode createBatchMessage(List<ObjectNode> messages) {
+        final ObjectNode msg = createMessage("batch");
+        msg.putArray("messages").addAll(messages);
+        return msg;
+    }
+
     public static ObjectNode createStatusMessage(String status) {
         final ObjectNode msg = createMessage("backend.status");
         msg.set("status", JsonNodeFactory.instance.textNode(status));
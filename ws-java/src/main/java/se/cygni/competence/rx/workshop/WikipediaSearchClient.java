@@ -1,12 +1,8 @@
 package se.cygni.competence.rx.workshop;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Charsets;
-import com.google.common.collect.Lists;
 import io.netty.buffer.ByteBuf;
-import io.reactivex.netty.RxNetty;
-import io.reactivex.netty.client.RxClient;
 import io.reactivex.netty.protocol.http.client.HttpClient;
 import io.reactivex.netty.protocol.http.client.HttpClientRequest;
 import io.reactivex.netty.protocol.http.client.HttpClientResponse;
@@ -16,47 +12,60 @@ import rx.functions.Action1;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * A client to wikipedia search
  * https://en.wikipedia.org/w/api.php?action=query&list=search&srsearch=Albert%20Einstein&utf8=&format=json
  */
-public class WikipediaSearchClient {
+public class WikipediaSearchClient implements SearchClient {
 
-    private HttpClient<ByteBuf, ByteBuf> client;
+    private static final Log LOG = Log.get("search");
+
+    private final HttpClient<ByteBuf, ByteBuf> client;
+    private final ConnectionPool pool;
 
     public WikipediaSearchClient() {
-        client = RxNetty.<ByteBuf, ByteBuf>newHttpClientBuilder("en.wikipedia.org", 443).config(RxClient.ClientConfig
-                .Builder.newDefaultConfig()).build();
+        this("en.wikipedia.org", 443);
+    }
+
+    /**
+     * Creates a client to a MediaWiki compatible API at the given host and port.
+     */
+    public WikipediaSearchClient(String host, int port) {
+        this(host, port, ConnectionPool.getDefault());
+    }
+
+    /**
+     * Creates a client to a MediaWiki compatible API at the given host and port, with connections from the given pool.
+     */
+    public WikipediaSearchClient(String host, int port, ConnectionPool pool) {
+        this.pool = pool;
+        client = pool.createClient(host, port);
     }
 
+    @Override
     public Observable<List<String>> searchRelated(String searchTerm) {
         final String relativeUrl = String.format("/w/api.php?action=query&generator=search&gsrsearch=%s&format=json&gsrprop=snippet&prop=info&inprop=url", Util.urlEncode(searchTerm));
-        System.out.println("Running request:" + relativeUrl + " on " + Thread.currentThread().getName());
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Running request:" + relativeUrl + " on " + Thread.currentThread().getName());
+        }
         HttpClientRequest<ByteBuf> req = HttpClientRequest.createGet(relativeUrl);
-        System.out.println("Created request");
         return client.submit(req)
+                .compose(pool.awaitConnection())
                 .flatMap(HttpClientResponse::getContent)
-                .reduce("", (s, byteBuf) -> s+ byteBuf.toString(Charsets.UTF_8))
-                .flatMap(all -> Observable.just(parseLinks(all)))
-                .doOnError(Throwable::printStackTrace);
+                .collect(WikipediaSearchClient::createLinkExtractor, StreamingJsonExtractor::feed)
+                .map(StreamingJsonExtractor::finish)
+                .doOnError(e -> LOG.warn("Request failed:" + relativeUrl, e));
     }
 
-    private static List<String> parseLinks(String s) {
-        final JsonNode root = Util.toJson(s);
-
-        if (root.has("query")) {
-            JsonNode query = root.get("query");
-            if (query.has("pages")) {
-                JsonNode pages = query.get("pages");
-                Iterable<JsonNode> it = pages::elements;
-                return StreamSupport.stream(it.spliterator(), false)
-                        .map(n -> n.get("canonicalurl").textValue())
-                        .collect(Collectors.toList());
-            }
-        }
-        return Collections.emptyList();
+    private static StreamingJsonExtractor createLinkExtractor() {
+        return new StreamingJsonExtractor("query", "pages", StreamingJsonExtractor.ANY, "canonicalurl");
+    }
+
+    static List<String> parseLinks(String s) {
+        final StreamingJsonExtractor extractor = createLinkExtractor();
+        final byte[] bytes = s.getBytes(Charsets.UTF_8);
+        extractor.feed(bytes, 0, bytes.length);
+        return extractor.finish();
     }
 }
@@ -0,0 +1,85 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The encodings of messages a client can choose between, by WebSocket subprotocol.
+ * <p>
+ * Clients which ask for no subprotocol, like ws-ui, get JSON in text frames. Clients which ask for
+ * <code>cbor.rx-workshop</code> get the same messages encoded as CBOR in binary frames, and may send
+ * CBOR in binary frames. Text frames are always decoded as JSON.
+ */
+public enum WireFormat {
+    JSON("", new JsonFactory()) {
+        @Override
+        void send(WebSocket webSocket, ObjectNode message) throws JsonProcessingException {
+            webSocket.send(mapper.writeValueAsString(message));
+        }
+    },
+    CBOR("cbor.rx-workshop", new CBORFactory()) {
+        @Override
+        void send(WebSocket webSocket, ObjectNode message) throws JsonProcessingException {
+            webSocket.send(mapper.writeValueAsBytes(message));
+        }
+    };
+
+    private final String subprotocol;
+    final ObjectMapper mapper;
+    private final MessageDecoder decoder;
+
+    WireFormat(String subprotocol, JsonFactory factory) {
+        this.subprotocol = subprotocol;
+        this.mapper = new ObjectMapper(factory);
+        this.decoder = new MessageDecoder(factory);
+    }
+
+    public String getSubprotocol() {
+        return subprotocol;
+    }
+
+    /**
+     * @return a decoder for binary frames in this format.
+     */
+    public MessageDecoder getDecoder() {
+        return decoder;
+    }
+
+    abstract void send(WebSocket webSocket, ObjectNode message) throws JsonProcessingException;
+
+    /**
+     * @return the format of the subprotocol negotiated for a connection.
+     */
+    static WireFormat of(WebSocket webSocket) {
+        final Draft draft = webSocket.getDraft();
+        if (draft instanceof Draft_6455) {
+            final IProtocol protocol = ((Draft_6455) draft).getProtocol();
+            if (protocol != null && CBOR.subprotocol.equals(protocol.getProvidedProtocol())) {
+                return CBOR;
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * @return the subprotocols to offer in the handshake, in order of preference, ending with the
+     * empty one which accepts clients asking for none.
+     */
+    static List<IProtocol> protocols() {
+        final List<IProtocol> protocols = new ArrayList<>();
+        protocols.add(new Protocol(CBOR.subprotocol));
+        protocols.add(new Protocol(JSON.subprotocol));
+        return protocols;
+    }
+}
@@ -0,0 +1,82 @@
+package se.cygni.competence.rx.workshop;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The blocking counterpart of {@link ConnectionHandler}: instead of wiring a pipeline, the handler is plain
+ * sequential code which loops over the events of its connection, blocking while it waits for the next one.
+ * Run by a {@link VirtualThreadHandler}, on a virtual thread of its own per connection.
+ */
+public interface BlockingConnectionHandler {
+
+    sealed interface Event permits GoClick, QueryInput, InstantSearchChange, EnterPress, Completed, Closed {
+    }
+
+    record GoClick() implements Event {
+    }
+
+    record QueryInput(String text) implements Event {
+    }
+
+    record InstantSearchChange(boolean enabled) implements Event {
+    }
+
+    record EnterPress() implements Event {
+    }
+
+    /**
+     * The outcome of a task started with {@link Connection#fork(long, Callable)}. Exactly one of
+     * <code>result</code> and <code>error</code> is set, unless the task returned null.
+     */
+    record Completed(long id, Object result, Throwable error) implements Event {
+    }
+
+    /**
+     * The last event of a connection.
+     */
+    record Closed() implements Event {
+    }
+
+    /**
+     * The events and output controls of one connection. Only to be used from the thread running the handler.
+     */
+    interface Connection {
+
+        /**
+         * Waits for the next event.
+         */
+        Event take() throws InterruptedException;
+
+        /**
+         * @return the next event, or null if none arrived within the timeout.
+         */
+        Event poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+        /**
+         * Runs a blocking task, like a search, on a virtual thread of its own. Unless it is cancelled,
+         * its outcome arrives as a {@link Completed} event with the given id, so that the handler can
+         * keep taking events while the task runs.
+         * @return the running task. Cancelling it interrupts its thread.
+         */
+        Future<?> fork(long id, Callable<?> task);
+
+        /**
+         * Replaces the result list with the given links.
+         */
+        void links(List<String> links);
+
+        /**
+         * Updates the "backend status" field.
+         */
+        void status(String status);
+    }
+
+    /**
+     * Handles a connection from when it is opened until its {@link Closed} event. Throwing ends the handling
+     * of the connection, but doesn't close it.
+     */
+    void handle(Connection connection) throws Exception;
+}
@@ -0,0 +1,45 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.subscriptions.Subscriptions;
+
+import java.util.List;
+
+/**
+ * A {@link SearchClient} over a blocking search, e.g. one using {@link java.net.http.HttpClient}. Each search
+ * runs on a virtual thread of its own, which is interrupted if the search is unsubscribed from, so blocking
+ * costs no platform thread.
+ */
+public class BlockingSearchClient implements SearchClient {
+
+    @FunctionalInterface
+    public interface Search {
+        List<String> searchRelated(String searchTerm) throws Exception;
+    }
+
+    private final Search search;
+
+    public BlockingSearchClient(Search search) {
+        this.search = search;
+    }
+
+    @Override
+    public Observable<List<String>> searchRelated(String searchTerm) {
+        return Observable.create(subscriber -> {
+            final Thread thread = Thread.startVirtualThread(() -> {
+                try {
+                    final List<String> links = search.searchRelated(searchTerm);
+                    if (!subscriber.isUnsubscribed()) {
+                        subscriber.onNext(links);
+                        subscriber.onCompleted();
+                    }
+                } catch (Exception e) {
+                    if (!subscriber.isUnsubscribed()) {
+                        subscriber.onError(e);
+                    }
+                }
+            });
+            subscriber.add(Subscriptions.create(thread::interrupt));
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package se.cygni.competence.rx.workshop;
+
+import rx.Observable;
+import rx.Observer;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.Closed;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.Completed;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.EnterPress;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.Event;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.GoClick;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.InstantSearchChange;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.QueryInput;
+
+/**
+ * Adapts a {@link BlockingConnectionHandler} to a {@link ConnectionHandler}. The input {@link Observable}s
+ * of each connection are turned into a queue of events, which a virtual thread per connection runs the
+ * blocking handler on. A parked virtual thread costs a few hundred bytes of stack, so this scales to as
+ * many connections as the Rx pipelines do.
+ */
+public class VirtualThreadHandler implements ConnectionHandler {
+
+    private static final Log LOG = Log.get("handler");
+
+    private final BlockingConnectionHandler handler;
+    private final ThreadFactory connectionThreads = Thread.ofVirtual().name("connection-", 0).factory();
+    private final AtomicInteger running = new AtomicInteger();
+
+    public VirtualThreadHandler(BlockingConnectionHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @return the number of connections which the blocking handler is currently handling.
+     */
+    public int getRunningHandlers() {
+        return running.get();
+    }
+
+    @Override
+    public void onConnectionOpen(
+            Observable<String> goClicks,
+            Observable<String> queryInputs,
+            Observable<Boolean> instantSearchChanges,
+            Observable<String> enterPresses,
+            Observer<List<String>> links,
+            Observer<String> status) {
+        final QueueConnection connection = new QueueConnection(links, status);
+        //The inputs complete together when the connection is closed
+        Observable.merge(
+                goClicks.<Event>map(o -> new GoClick()),
+                queryInputs.<Event>map(QueryInput::new),
+                instantSearchChanges.<Event>map(InstantSearchChange::new),
+                enterPresses.<Event>map(o -> new EnterPress()))
+                .subscribe(connection.events::add, e -> connection.events.add(new Closed()), () -> connection.events.add(new Closed()));
+        running.incrementAndGet();
+        connectionThreads.newThread(() -> {
+            try {
+                handler.handle(connection);
+            } catch (Exception e) {
+                LOG.warn("blocking handler failed", e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }).start();
+    }
+
+    private static class QueueConnection implements BlockingConnectionHandler.Connection {
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        private final Observer<List<String>> links;
+        private final Observer<String> status;
+
+        QueueConnection(Observer<List<String>> links, Observer<String> status) {
+            this.links = links;
+            this.status = status;
+        }
+
+        @Override
+        public Event take() throws InterruptedException {
+            return events.take();
+        }
+
+        @Override
+        public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return events.poll(timeout, unit);
+        }
+
+        @Override
+        public Future<?> fork(long id, Callable<?> task) {
+            final FutureTask<Object> future = new FutureTask<Object>(task::call) {
+                @Override
+                protected void done() {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    try {
+                        events.add(new Completed(id, get(), null));
+                    } catch (ExecutionException e) {
+                        events.add(new Completed(id, null, e.getCause()));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+            Thread.startVirtualThread(future);
+            return future;
+        }
+
+        @Override
+        public void links(List<String> links) {
+            this.links.onNext(links);
+        }
+
+        @Override
+        public void status(String status) {
+            this.status.onNext(status);
+        }
+    }
+}
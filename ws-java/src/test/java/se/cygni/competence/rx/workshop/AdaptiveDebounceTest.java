@@ -0,0 +1,59 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveDebounceTest {
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private long backendLatency;
+    private final AdaptiveDebounce adaptiveDebounce = new AdaptiveDebounce(100, 1000, TimeUnit.MILLISECONDS,
+            () -> backendLatency, scheduler);
+    private final PublishSubject<String> text = PublishSubject.create();
+    private final TestSubscriber<String> subscriber = new TestSubscriber<>();
+
+    @Test
+    public void quietPeriodWithinBounds() {
+        assertEquals(100, adaptiveDebounce.quietPeriod(10, 0));
+        assertEquals(400, adaptiveDebounce.quietPeriod(100, 400));
+        assertEquals(1000, adaptiveDebounce.quietPeriod(400, 1000));
+    }
+
+    @Test
+    public void fastTypistGetsShortQuietPeriod() {
+        text.compose(adaptiveDebounce.<String>debounce()).subscribe(subscriber);
+        for (int i = 1; i <= 20; i++) {
+            text.onNext("kafka".substring(0, i % 5 + 1));
+            scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        }
+        subscriber.assertNoValues();
+        scheduler.advanceTimeBy(60, TimeUnit.MILLISECONDS);
+        subscriber.assertValue("k");
+    }
+
+    @Test
+    public void slowBackendLengthensQuietPeriod() {
+        backendLatency = 1000;
+        text.compose(adaptiveDebounce.<String>debounce()).subscribe(subscriber);
+        text.onNext("kafka");
+        scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+        subscriber.assertNoValues();
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        subscriber.assertValue("kafka");
+    }
+
+    @Test
+    public void completesLikeDebounce() {
+        text.compose(adaptiveDebounce.<String>debounce()).subscribe(subscriber);
+        text.onNext("kafka");
+        text.onCompleted();
+        subscriber.assertValue("kafka");
+        subscriber.assertCompleted();
+    }
+}
@@ -0,0 +1,100 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.Observable;
+import rx.schedulers.TestScheduler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class CachingSearchClientTest {
+
+    private final List<String> searches = new ArrayList<>();
+    private final SearchClient backend = term -> {
+        searches.add(term);
+        return Observable.just(term.isEmpty() ? Collections.<String>emptyList() : Collections.singletonList(term + searches.size()));
+    };
+    private final TestScheduler scheduler = new TestScheduler();
+    private final CachingSearchClient cache = new CachingSearchClient(backend, 2, 10, 1, 5, TimeUnit.SECONDS, scheduler);
+
+    private List<String> search(String term) {
+        return cache.searchRelated(term).toBlocking().single();
+    }
+
+    @Test
+    public void servesRepeatedSearchesFromCache() {
+        assertEquals(Collections.singletonList("a1"), search("a"));
+        assertEquals(Collections.singletonList("a1"), search("a"));
+        assertEquals(1, searches.size());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void looksUpOnSubscription() {
+        final Observable<List<String>> later = cache.searchRelated("a");
+        assertEquals(0, cache.getMisses());
+        search("a");
+        assertEquals(Collections.singletonList("a1"), later.toBlocking().single());
+        assertEquals(1, searches.size());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void servesStaleResultWhileRevalidating() {
+        search("a");
+        scheduler.advanceTimeBy(11, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("a1"), search("a"));
+        assertEquals(Collections.singletonList("a2"), search("a"));
+        assertEquals(1, cache.getStaleHits());
+        assertEquals(2, searches.size());
+    }
+
+    @Test
+    public void revalidatesAgainAfterEmptyRevalidation() {
+        final List<String> links = Collections.singletonList("a");
+        final AtomicInteger calls = new AtomicInteger();
+        final CachingSearchClient cache = new CachingSearchClient(term -> calls.incrementAndGet() == 1
+                ? Observable.just(links) : Observable.<List<String>>empty(), 2, 10, 1, 5, TimeUnit.SECONDS, scheduler);
+        cache.searchRelated("a").toBlocking().single();
+        scheduler.advanceTimeBy(11, TimeUnit.SECONDS);
+        assertEquals(links, cache.searchRelated("a").toBlocking().single());
+        assertEquals(links, cache.searchRelated("a").toBlocking().single());
+        assertEquals(3, calls.get());
+        assertEquals(2, cache.getStaleHits());
+    }
+
+    @Test
+    public void searchesAgainAfterStalePeriod() {
+        search("a");
+        scheduler.advanceTimeBy(16, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("a2"), search("a"));
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void emptyResultsExpireSooner() {
+        search("");
+        scheduler.advanceTimeBy(7, TimeUnit.SECONDS);
+        search("");
+        assertEquals(2, searches.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        search("a");
+        search("b");
+        search("a");
+        search("c");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        search("a");
+        search("b");
+        assertEquals(4, searches.size());
+    }
+}
@@ -0,0 +1,52 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private final CircuitBreaker breaker = new CircuitBreaker(2, 1000);
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        assertTrue(breaker.allowRequest(0));
+        breaker.onFailure(0);
+        assertTrue(breaker.allowRequest(0));
+        breaker.onFailure(10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest(500));
+        assertEquals(510, breaker.getRetryInMillis(500));
+    }
+
+    @Test
+    public void letsOneTrialThroughWhenHalfOpen() {
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertTrue(breaker.allowRequest(1000));
+        assertFalse(breaker.allowRequest(1000));
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest(1000));
+    }
+
+    @Test
+    public void reopensWhenTrialFails() {
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertTrue(breaker.allowRequest(1000));
+        breaker.onFailure(1000);
+        assertFalse(breaker.allowRequest(1500));
+        assertTrue(breaker.allowRequest(2000));
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        breaker.onFailure(0);
+        breaker.onSuccess();
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
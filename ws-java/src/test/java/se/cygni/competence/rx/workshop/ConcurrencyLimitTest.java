@@ -0,0 +1,63 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void rejectsAtLimit() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(2, 1, 10);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.onIgnored();
+        assertEquals(1, limit.getInFlight());
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void growsWhileRoundTripsStayShort() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(4, 1, 100);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.onSuccess(FAST);
+        }
+        assertTrue(limit.getLimit() > 4);
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    public void shrinksWhenRoundTripsGrow() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(50, 1, 100);
+        limit.tryAcquire();
+        limit.onSuccess(FAST);
+        final int before = limit.getLimit();
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire();
+            limit.onSuccess(SLOW);
+        }
+        assertTrue(limit.getLimit() < before);
+    }
+
+    @Test
+    public void shrinksOnDropsDownToMinimum() {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(10, 2, 100);
+        limit.tryAcquire();
+        limit.onDropped();
+        assertEquals(9, limit.getLimit());
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.onDropped();
+        }
+        assertEquals(2, limit.getLimit());
+    }
+}
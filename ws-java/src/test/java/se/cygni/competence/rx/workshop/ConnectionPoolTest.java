@@ -0,0 +1,96 @@
+package se.cygni.competence.rx.workshop;
+
+import io.reactivex.netty.client.PoolExhaustedException;
+import org.junit.After;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionPoolTest {
+
+    private FakeSearchBackend backend;
+
+    @After
+    public void tearDown() {
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
+    private DuckDuckGoClient client(long latencyMillis, ConnectionPool pool) throws IOException {
+        backend = new FakeSearchBackend(2, 0, FakeSearchBackend.LatencyDistribution.fixed(latencyMillis));
+        return new DuckDuckGoClient(backend.getHost(), backend.getPort(), pool);
+    }
+
+    /**
+     * Connections are released and closed on the event loop, after the result has been delivered.
+     */
+    private static void awaitEquals(long expected, LongSupplier actual) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 3000;
+        while (actual.getAsLong() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, actual.getAsLong());
+    }
+
+    @Test
+    public void reusesConnection() throws IOException, InterruptedException {
+        final ConnectionPool pool = new ConnectionPool().withMaxConnectionsPerHost(1);
+        final DuckDuckGoClient client = client(10, pool);
+        client.searchRelated("a").toBlocking().single();
+        awaitEquals(0, pool::getActiveConnections);
+        client.searchRelated("b").toBlocking().single();
+
+        awaitEquals(0, pool::getActiveConnections);
+        assertEquals(1, pool.getReusedConnections());
+        assertEquals(1, pool.getPoolSize());
+        assertEquals(1, pool.getIdleConnections());
+    }
+
+    @Test
+    public void timesOutAcquiringWhileConnectionIsBusy() throws IOException, InterruptedException {
+        final ConnectionPool pool = new ConnectionPool().withMaxConnectionsPerHost(1)
+                .withAcquireTimeout(50, TimeUnit.MILLISECONDS);
+        final DuckDuckGoClient client = client(500, pool);
+        final TestSubscriber<List<String>> first = new TestSubscriber<>();
+        client.searchRelated("a").subscribe(first);
+        awaitEquals(1, pool::getActiveConnections);
+        assertEquals(0, pool.getIdleConnections());
+
+        final TestSubscriber<List<String>> second = new TestSubscriber<>();
+        client.searchRelated("b").subscribe(second);
+        second.awaitTerminalEvent(3, TimeUnit.SECONDS);
+        second.assertError(PoolExhaustedException.class);
+        assertEquals(1, pool.getAcquireTimeouts());
+
+        first.awaitTerminalEvent(3, TimeUnit.SECONDS);
+        first.assertNoErrors();
+    }
+
+    @Test
+    public void recordsWaitOfQueuedRequest() throws IOException, InterruptedException {
+        final ConnectionPool pool = new ConnectionPool().withMaxConnectionsPerHost(1)
+                .withAcquireTimeout(2, TimeUnit.SECONDS).withMetricsInterval(0, TimeUnit.MILLISECONDS);
+        final DuckDuckGoClient client = client(100, pool);
+        final TestSubscriber<List<String>> first = new TestSubscriber<>();
+        final TestSubscriber<List<String>> second = new TestSubscriber<>();
+        client.searchRelated("a").subscribe(first);
+        client.searchRelated("b").subscribe(second);
+        first.awaitTerminalEvent(3, TimeUnit.SECONDS);
+        second.awaitTerminalEvent(3, TimeUnit.SECONDS);
+        first.assertNoErrors();
+        second.assertNoErrors();
+
+        final LatencySnapshot wait = pool.getAcquireWait();
+        assertEquals(2, wait.getCount());
+        assertTrue("waited " + wait.getMax() + " ms", wait.getMax() >= 50);
+        assertEquals(0, pool.getAcquireTimeouts());
+    }
+}
@@ -0,0 +1,61 @@
+package se.cygni.competence.rx.workshop;
+
+import org.java_websocket.framing.TextFrame;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CountingDeflateExtensionTest {
+
+    private final CompressionStats stats = new CompressionStats();
+
+    private static TextFrame frame(String text) {
+        final TextFrame frame = new TextFrame();
+        frame.setPayload(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        frame.setFin(true);
+        return frame;
+    }
+
+    private static String links() {
+        final List<String> links = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            links.add("https://duckduckgo.com/Apache_Kafka_" + i);
+        }
+        return Util.toString(Util.createLinksMessage(links));
+    }
+
+    @Test
+    public void compressesLinksAndCountsBytes() {
+        final CountingDeflateExtension extension = new CountingDeflateExtension(stats, 256, false);
+        final String links = links();
+        extension.encodeFrame(frame(links));
+        assertEquals(1, stats.getCompressedFrames());
+        assertEquals(links.length(), stats.getBytesBefore());
+        assertTrue(stats.getBytesAfter() < links.length() / 2);
+    }
+
+    @Test
+    public void leavesSmallFramesUncompressed() {
+        final CountingDeflateExtension extension = new CountingDeflateExtension(stats, 256, false);
+        final String status = Util.toString(Util.createStatusMessage("searching"));
+        extension.encodeFrame(frame(status));
+        assertEquals(1, stats.getFrames());
+        assertEquals(0, stats.getCompressedFrames());
+        assertEquals(status.length(), stats.getBytesAfter());
+    }
+
+    @Test
+    public void copiesShareStatsAndSettings() {
+        final CountingDeflateExtension extension = (CountingDeflateExtension) new CountingDeflateExtension(stats, 256, true).copyInstance();
+        extension.encodeFrame(frame(links()));
+        assertEquals(1, stats.getCompressedFrames());
+        assertFalse(extension.isServerNoContextTakeover());
+    }
+}
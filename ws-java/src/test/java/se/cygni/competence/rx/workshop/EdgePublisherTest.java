@@ -0,0 +1,190 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EdgePublisherTest {
+
+    private static class Recorder implements Subscriber<String> {
+        final List<String> received = new ArrayList<>();
+        Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(String s) {
+            received.add(s);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    private EdgePublisher<String> edge(int capacity, OverflowPolicy policy) {
+        return new EdgePublisher<>(capacity, policy, dropped::incrementAndGet);
+    }
+
+    @Test
+    public void emitsOnlyWhatIsRequested() {
+        final EdgePublisher<String> edge = edge(16, OverflowPolicy.DROP_OLDEST);
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        edge.offer("a");
+        edge.offer("b");
+        edge.offer("c");
+        assertEquals(Arrays.<String>asList(), recorder.received);
+        recorder.subscription.request(2);
+        assertEquals(Arrays.asList("a", "b"), recorder.received);
+        recorder.subscription.request(2);
+        edge.offer("d");
+        edge.offer("e");
+        assertEquals(Arrays.asList("a", "b", "c", "d"), recorder.received);
+    }
+
+    @Test
+    public void buffersUntilSubscribed() {
+        final EdgePublisher<String> edge = edge(16, OverflowPolicy.DROP_OLDEST);
+        edge.offer("a");
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        edge.offer("b");
+        assertEquals(Arrays.asList("a", "b"), recorder.received);
+    }
+
+    @Test
+    public void dropsOldestWhenFull() {
+        final EdgePublisher<String> edge = edge(2, OverflowPolicy.DROP_OLDEST);
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        assertTrue(edge.offer("a"));
+        assertTrue(edge.offer("b"));
+        assertTrue(edge.offer("c"));
+        recorder.subscription.request(10);
+        assertEquals(Arrays.asList("b", "c"), recorder.received);
+        assertEquals(1, dropped.get());
+    }
+
+    @Test
+    public void dropsNewestWhenFull() {
+        final EdgePublisher<String> edge = edge(2, OverflowPolicy.DROP_NEWEST);
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        edge.offer("a");
+        edge.offer("b");
+        edge.offer("c");
+        recorder.subscription.request(10);
+        assertEquals(Arrays.asList("a", "b"), recorder.received);
+        assertEquals(1, dropped.get());
+    }
+
+    @Test
+    public void refusesWhenFullAndDisconnecting() {
+        final EdgePublisher<String> edge = edge(1, OverflowPolicy.DISCONNECT);
+        edge.subscribe(new Recorder());
+        assertTrue(edge.offer("a"));
+        assertFalse(edge.offer("b"));
+        assertEquals(0, dropped.get());
+    }
+
+    @Test
+    public void completesAfterBufferedEvents() {
+        final EdgePublisher<String> edge = edge(16, OverflowPolicy.DROP_OLDEST);
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        edge.offer("a");
+        edge.complete();
+        assertFalse(recorder.completed);
+        recorder.subscription.request(1);
+        assertEquals(Arrays.asList("a"), recorder.received);
+        assertTrue(recorder.completed);
+    }
+
+    @Test
+    public void stopsWhenCancelled() {
+        final EdgePublisher<String> edge = edge(16, OverflowPolicy.DROP_OLDEST);
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        recorder.subscription.request(10);
+        edge.offer("a");
+        recorder.subscription.cancel();
+        edge.offer("b");
+        assertEquals(Arrays.asList("a"), recorder.received);
+    }
+
+    @Test
+    public void discardsAfterCancelEvenWhenDisconnecting() {
+        final EdgePublisher<String> edge = edge(1, OverflowPolicy.DISCONNECT);
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        recorder.subscription.cancel();
+        assertTrue(edge.offer("a"));
+        assertTrue(edge.offer("b"));
+        assertEquals(0, dropped.get());
+    }
+
+    @Test
+    public void discardsWhenIgnoredEvenWhenDisconnecting() {
+        final EdgePublisher<String> edge = edge(1, OverflowPolicy.DISCONNECT);
+        edge.ignoreUnlessSubscribed();
+        assertTrue(edge.offer("a"));
+        assertTrue(edge.offer("b"));
+        assertEquals(0, dropped.get());
+        final Recorder late = new Recorder();
+        edge.subscribe(late);
+        assertTrue(late.error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void keepsBufferingWhenSubscribedBeforeIgnore() {
+        final EdgePublisher<String> edge = edge(16, OverflowPolicy.DROP_OLDEST);
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        edge.ignoreUnlessSubscribed();
+        edge.offer("a");
+        recorder.subscription.request(1);
+        assertEquals(Arrays.asList("a"), recorder.received);
+    }
+
+    @Test
+    public void rejectsNonPositiveRequests() {
+        final EdgePublisher<String> edge = edge(16, OverflowPolicy.DROP_OLDEST);
+        final Recorder recorder = new Recorder();
+        edge.subscribe(recorder);
+        recorder.subscription.request(0);
+        assertTrue(recorder.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void acceptsOneSubscriber() {
+        final EdgePublisher<String> edge = edge(16, OverflowPolicy.DROP_OLDEST);
+        edge.subscribe(new Recorder());
+        final Recorder second = new Recorder();
+        edge.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,110 @@
+package se.cygni.competence.rx.workshop;
+
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.WebSocketListener;
+import org.java_websocket.drafts.Draft_6455;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class EdgeSubscriberTest {
+
+    private static class RecordingSubscription implements Subscription {
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger cancels = new AtomicInteger();
+        final AtomicBoolean signalling = new AtomicBoolean();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+
+        @Override
+        public void request(long n) {
+            enter();
+            requested.addAndGet(n);
+            signalling.set(false);
+        }
+
+        @Override
+        public void cancel() {
+            enter();
+            cancels.incrementAndGet();
+            signalling.set(false);
+        }
+
+        private void enter() {
+            if (!signalling.compareAndSet(false, true)) {
+                overlapped.set(true);
+            }
+        }
+    }
+
+    private final WebSocketImpl webSocket = new WebSocketImpl(mock(WebSocketListener.class), new Draft_6455());
+    private final Set<EdgeSubscriber<?>> starved = ConcurrentHashMap.newKeySet();
+    private final OutboundQueue queue = new OutboundQueue(webSocket,
+            new ServerOptions().withOutboundLimit(2, 1024, 1, TimeUnit.MINUTES), new OutboundStats(),
+            ConcurrentHashMap.newKeySet(), (kind, message) -> {
+    });
+    private final EdgeSubscriber<String> sink = new EdgeSubscriber<>(queue, OutboundQueue.Kind.STATUS,
+            Util::createStatusMessage, 4, starved);
+    private final RecordingSubscription subscription = new RecordingSubscription();
+
+    @Test
+    public void requestsWindowWhileWritable() {
+        sink.onSubscribe(subscription);
+        assertEquals(4, subscription.requested.get());
+        sink.onNext("a");
+        assertEquals(5, subscription.requested.get());
+    }
+
+    @Test
+    public void waitsForDrainWhileNotWritable() {
+        webSocket.outQueue.add(ByteBuffer.allocate(10));
+        webSocket.outQueue.add(ByteBuffer.allocate(10));
+        sink.onSubscribe(subscription);
+        assertEquals(0, subscription.requested.get());
+        assertEquals(Collections.singleton(sink), starved);
+        webSocket.outQueue.clear();
+        sink.requestMore();
+        assertEquals(4, subscription.requested.get());
+        assertTrue(starved.isEmpty());
+    }
+
+    @Test
+    public void stopsSignallingWhenCancelled() {
+        sink.onSubscribe(subscription);
+        sink.cancel();
+        sink.cancel();
+        sink.requestMore();
+        assertEquals(1, subscription.cancels.get());
+        assertEquals(4, subscription.requested.get());
+    }
+
+    @Test
+    public void signalsSubscriptionFromOneThreadAtATime() throws InterruptedException {
+        sink.onSubscribe(subscription);
+        final Thread drainer = new Thread(() -> {
+            for (int i = 0; i < 100000; i++) {
+                sink.requestMore();
+            }
+        });
+        drainer.start();
+        for (int i = 0; i < 100000; i++) {
+            sink.onNext("a");
+        }
+        sink.cancel();
+        drainer.join();
+        assertFalse(subscription.overlapped.get());
+        assertEquals(1, subscription.cancels.get());
+    }
+}
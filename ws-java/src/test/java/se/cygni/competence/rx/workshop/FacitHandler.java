@@ -2,21 +2,57 @@ package se.cygni.competence.rx.workshop;
 
 import rx.Observable;
 import rx.Observer;
-import rx.observables.ConnectableObservable;
+import rx.schedulers.Timestamped;
 
 import java.net.URI;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class FacitHandler implements ConnectionHandler {
 
-    private final DuckDuckGoClient duckDuckGoClient;
+    private static final Log LOG = Log.get("handler");
 
-    public FacitHandler(DuckDuckGoClient duckDuckGoClient) {
-        this.duckDuckGoClient = duckDuckGoClient;
+    private final SearchClient searchClient;
+    private final LatestWins latestWins;
+    private PrefixSearch prefixSearch;
+    private SpeculativePrefetch speculativePrefetch;
+    private AdaptiveDebounce adaptiveDebounce;
+
+    public FacitHandler(SearchClient searchClient) {
+        this.searchClient = searchClient;
+        this.latestWins = new LatestWins();
+    }
+
+    /**
+     * Answers instant searches from earlier results instead of debouncing them.
+     */
+    public FacitHandler withPrefixSearch(PrefixSearch prefixSearch) {
+        this.prefixSearch = prefixSearch;
+        return this;
+    }
+
+    /**
+     * Debounces instant searches for a period adapted to the connection, instead of for one second.
+     */
+    public FacitHandler withAdaptiveDebounce(AdaptiveDebounce adaptiveDebounce) {
+        this.adaptiveDebounce = adaptiveDebounce;
+        return this;
+    }
+
+    /**
+     * Starts instant searches speculatively while they are being debounced. Not used together with prefix search.
+     */
+    public FacitHandler withSpeculativePrefetch(SpeculativePrefetch speculativePrefetch) {
+        this.speculativePrefetch = speculativePrefetch;
+        return this;
+    }
+
+    /**
+     * @return the number of searches cancelled because a newer search superseded them.
+     */
+    public long getCancelledSearches() {
+        return latestWins.getCancelledRequests();
     }
 
     /**
@@ -34,40 +70,87 @@ public class FacitHandler implements ConnectionHandler {
         final Observable<String> textOnTypeWhenInstantEnabled = Observable.combineLatest(queryInputs,
                 instantSearchChanges, (phrase, checked) -> checked ? phrase : "").filter(p -> !p.isEmpty());
         textOnTypeWhenInstantEnabled.map(o -> "listening").subscribe(status);
-        Observable<String> debouncedTextOnTypeWhenInstantEnabled = textOnTypeWhenInstantEnabled.debounce(1, TimeUnit.SECONDS);
-        Observable<String> textOnAction = textOnGoClick.mergeWith(textOnEnterPress).mergeWith(debouncedTextOnTypeWhenInstantEnabled);
+        final SearchClient instantClient = instantClient(textOnTypeWhenInstantEnabled);
+        //With prefix search, the stability window of the prefix search takes the place of the debounce
+        final Observable<String> instantText = prefixSearch != null ? textOnTypeWhenInstantEnabled : textOnTypeWhenInstantEnabled
+                .compose(adaptiveDebounce != null
+                        ? LatencyMetrics.getDefault().debounce(adaptiveDebounce.<Timestamped<String>>debounce())
+                        : LatencyMetrics.getDefault().debounce(1, TimeUnit.SECONDS));
+        final Observable<String> textOnClick = textOnGoClick.mergeWith(textOnEnterPress);
+        Observable<String> textOnAction = textOnClick.mergeWith(instantText);
         textOnAction.map(o -> "searching").subscribe(status);
         textOnAction.subscribe(s -> {
-            System.out.println("About to search");
+            LOG.debug("About to search");
         });
-        final Observable<List<String>> requests = textOnAction.flatMap((searchTerm) -> {
-            Observable<List<String>> dResultLists = duckDuckGoClient.searchRelated(searchTerm);
-            //Observable<List<String>> wResultLists = new WikipediaSearchClient().searchRelated(searchTerm);
-            //return dResultLists.zipWith(wResultLists, this::interleave);
-            return dResultLists;
-        });
-        //Don't want two subscribers on requests since it triggers double requests being issued
-        final ConnectableObservable<List<String>> doneRequests = requests.publish();
-        doneRequests.zipWith(textOnAction, (o, text) -> "search for '" + text + "' done").subscribe(status);
-        doneRequests.subscribe(links);
-        doneRequests.connect();
+        final Observable<Observable<List<String>>> searches = textOnClick.map(searchTerm -> search(searchClient, searchTerm, status))
+                .mergeWith(instantText.map(searchTerm -> instantSearch(instantClient, searchTerm, status)));
+        final Observable<List<String>> requests = searches.compose(latestWins.switchMap((Observable<List<String>> search) -> search));
+        //A newer search unsubscribes from the older one, so stale results never overwrite newer ones
+        requests.subscribe(links);
         status.onNext("ready");
     }
 
-    private <T> ArrayList<T> interleave(List<? extends T> as, List<? extends T> bs) {
-        final ArrayList<T> rs = new ArrayList<>();
-        for(Iterator<? extends T> ia = as.iterator(), ib = bs.iterator(); ia.hasNext() || ib.hasNext();) {
-            if (ia.hasNext()) {
-                rs.add(ia.next());
-            }
-            if (ib.hasNext()) {
-                rs.add(ib.next());
-            }
+    private SearchClient instantClient(Observable<String> textOnTypeWhenInstantEnabled) {
+        if (prefixSearch != null) {
+            return prefixSearch.newSession();
+        }
+        if (speculativePrefetch != null) {
+            final SpeculativePrefetch.Session session = speculativePrefetch.newSession();
+            session.speculate(textOnTypeWhenInstantEnabled);
+            return session;
+        }
+        return searchClient;
+    }
+
+    private static Observable<List<String>> instantSearch(SearchClient client, String searchTerm, Observer<String> status) {
+        if (!(client instanceof PrefixSearch.Session)) {
+            return search(client, searchTerm, status);
         }
-        return rs;
+        //The answer from earlier results is not the end of the search, the real result follows
+        final PrefixSearch.Session session = (PrefixSearch.Session) client;
+        return session.cached(searchTerm)
+                .doOnNext(o -> status.onNext("showing cached results for '" + searchTerm + "'"))
+                .concatWith(search(session::upstream, searchTerm, status));
     }
 
+    private static Observable<List<String>> search(SearchClient client, String searchTerm, Observer<String> status) {
+        return client.searchRelated(searchTerm)
+                .doOnNext(o -> status.onNext("search for '" + searchTerm + "' done"))
+                .onErrorResumeNext(e -> {
+                    //Keep the pipeline alive for the next search, and tell the user why this one failed
+                    status.onNext(e instanceof BackendUnavailableException ? e.getMessage() : "search for '" + searchTerm + "' failed");
+                    return Observable.empty();
+                });
+    }
+
+    /**
+     * Instant searches use prefix search, or with <code>-Dinstant=debounce</code> an adaptive debounce and speculative prefetch.
+     */
     public static void main(String[] args) throws InterruptedException, UnknownHostException {
-        Server.startAndServe(new FacitHandler(new DuckDuckGoClient()));
+        final TimedSearchClient duckDuckGo = new TimedSearchClient(new DuckDuckGoClient(), LatencyMetrics.getDefault());
+        final TimedSearchClient wikipedia = new TimedSearchClient(new WikipediaSearchClient(), LatencyMetrics.getDefault());
+        final FederatedSearchClient federated = new FederatedSearchClient(
+                new FederatedSearchClient.Backend("duckduckgo", cached("duckduckgo", duckDuckGo), 800, TimeUnit.MILLISECONDS),
+                new FederatedSearchClient.Backend("wikipedia", cached("wikipedia", wikipedia), 800, TimeUnit.MILLISECONDS));
+        //All connections search through one hub, so that popular searches go upstream once
+        final SearchHub hub = new SearchHub(federated);
+        final FacitHandler handler = new FacitHandler(hub);
+        if ("debounce".equals(System.getProperty("instant"))) {
+            handler.withAdaptiveDebounce(new AdaptiveDebounce(200, 1500, TimeUnit.MILLISECONDS,
+                    () -> Math.max(duckDuckGo.getRecentMillis(), wikipedia.getRecentMillis())))
+                    .withSpeculativePrefetch(new SpeculativePrefetch(hub, 150, TimeUnit.MILLISECONDS, 50));
+        } else {
+            handler.withPrefixSearch(new PrefixSearch(hub, 10000, 300, TimeUnit.MILLISECONDS));
+        }
+        Server.startAndServe(handler);
+    }
+
+    private static SearchClient cached(String name, TimedSearchClient timed) {
+        //Time out below the federated deadline, so that a slow backend counts as failing instead of as cancelled
+        final SearchClient protectedClient = new ProtectedSearchClient(name, timed, 700, TimeUnit.MILLISECONDS);
+        //Hedge the slowest 5% of searches after the p95 latency, but never more than 5% of them.
+        //Each hedge takes a permit of the concurrency limit like any other search
+        final SearchClient hedged = new HedgingSearchClient(protectedClient, 95, 300, TimeUnit.MILLISECONDS, 0.05);
+        return new CachingSearchClient(hedged, 10000, 5, 1, 1, TimeUnit.MINUTES);
     }
 }
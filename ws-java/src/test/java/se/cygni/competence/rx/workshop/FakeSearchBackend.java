@@ -0,0 +1,188 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local HTTP server which answers the requests of {@link DuckDuckGoClient} and {@link WikipediaSearchClient}
+ * with responses shaped like the real ones, so that tests and benchmarks can run offline and with
+ * controlled latency.
+ * <p>
+ * A search for "some term" returns the links <code>https://duckduckgo.com/some_term_1</code> and onwards,
+ * or <code>https://en.wikipedia.org/wiki/some_term_1</code> and onwards, up to the configured number of links.
+ */
+public class FakeSearchBackend implements AutoCloseable {
+
+    /**
+     * The time to wait before answering a request.
+     */
+    public interface LatencyDistribution {
+        long nextMillis(Random random);
+
+        static LatencyDistribution fixed(long millis) {
+            return random -> millis;
+        }
+
+        /**
+         * @param medianMillis the median latency.
+         * @param sigma        the standard deviation of the logarithm of the latency. Around 0.5 gives a moderate tail.
+         */
+        static LatencyDistribution logNormal(double medianMillis, double sigma) {
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+
+        /**
+         * Mostly draws from <code>fast</code>, but from <code>slow</code> for the given fraction of requests.
+         */
+        static LatencyDistribution bimodal(LatencyDistribution fast, LatencyDistribution slow, double slowFraction) {
+            return random -> random.nextDouble() < slowFraction ? slow.nextMillis(random) : fast.nextMillis(random);
+        }
+    }
+
+    private final int linksPerResponse;
+    private final int chunkSize;
+    private final LatencyDistribution latency;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * @param linksPerResponse the number of links in each response.
+     * @param chunkSize        if positive, responses are sent with chunked encoding in chunks of this size,
+     *                         otherwise they are sent with a content length in one go.
+     * @param latency          the time to wait before answering each request.
+     */
+    public FakeSearchBackend(int linksPerResponse, int chunkSize, LatencyDistribution latency) throws IOException {
+        this.linksPerResponse = linksPerResponse;
+        this.chunkSize = chunkSize;
+        this.latency = latency;
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/w/api.php", exchange -> respond(exchange, wikipediaResponse(parameter(exchange, "gsrsearch"))));
+        server.createContext("/", exchange -> respond(exchange, duckDuckGoResponse(parameter(exchange, "q"))));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getHost() {
+        return server.getAddress().getHostString();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the number of requests received so far.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    private void respond(HttpExchange exchange, ObjectNode response) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Thread.sleep(Math.max(0, latency.nextMillis(ThreadLocalRandom.current())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+            return;
+        }
+        final byte[] body = Util.toString(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        try (OutputStream out = exchange.getResponseBody()) {
+            if (chunkSize > 0) {
+                exchange.sendResponseHeaders(200, 0);
+                for (int offset = 0; offset < body.length; offset += chunkSize) {
+                    out.write(body, offset, Math.min(chunkSize, body.length - offset));
+                    out.flush();
+                }
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                out.write(body);
+            }
+        }
+    }
+
+    private ObjectNode duckDuckGoResponse(String query) {
+        final JsonNodeFactory nf = JsonNodeFactory.instance;
+        final ArrayNode topics = nf.arrayNode();
+        for (int i = 1; i <= linksPerResponse; i++) {
+            final ObjectNode topic = nf.objectNode();
+            final String url = "https://duckduckgo.com/" + slug(query) + "_" + i;
+            topic.put("FirstURL", url);
+            topic.set("Icon", nf.objectNode().put("Height", "").put("URL", "").put("Width", ""));
+            topic.put("Result", "<a href=\"" + url + "\">" + query + " " + i + "</a>A related topic to " + query + ".");
+            topic.put("Text", query + " " + i + " A related topic to " + query + ".");
+            topics.add(topic);
+        }
+        final ObjectNode root = nf.objectNode();
+        root.put("Abstract", "");
+        root.put("Heading", query);
+        root.set("RelatedTopics", topics);
+        root.set("Results", nf.arrayNode());
+        root.put("Type", "D");
+        return root;
+    }
+
+    private ObjectNode wikipediaResponse(String query) {
+        final JsonNodeFactory nf = JsonNodeFactory.instance;
+        final ObjectNode pages = nf.objectNode();
+        for (int i = 1; i <= linksPerResponse; i++) {
+            final ObjectNode page = nf.objectNode();
+            page.put("pageid", 1000 + i);
+            page.put("ns", 0);
+            page.put("title", query + " " + i);
+            page.put("index", i);
+            page.put("contentmodel", "wikitext");
+            page.put("pagelanguage", "en");
+            page.put("fullurl", "https://en.wikipedia.org/wiki/" + slug(query) + "_" + i);
+            page.put("canonicalurl", "https://en.wikipedia.org/wiki/" + slug(query) + "_" + i);
+            pages.set(Integer.toString(1000 + i), page);
+        }
+        final ObjectNode root = nf.objectNode();
+        root.put("batchcomplete", "");
+        if (linksPerResponse > 0) {
+            root.set("query", nf.objectNode().set("pages", pages));
+        }
+        return root;
+    }
+
+    private static String slug(String query) {
+        return query.trim().replace(' ', '_');
+    }
+
+    private static String parameter(HttpExchange exchange, String name) throws UnsupportedEncodingException {
+        final String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                final int eq = pair.indexOf('=');
+                if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                    return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+                }
+            }
+        }
+        return "";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,48 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class FederatedSearchClientTest {
+
+    private final TestScheduler scheduler = new TestScheduler();
+
+    @Test
+    public void interleavesWithoutDuplicates() {
+        assertEquals(Arrays.asList("a1", "b1", "a2", "a3", "b3"),
+                FederatedSearchClient.interleave(Arrays.asList(Arrays.asList("a1", "a2", "a3"), Arrays.asList("b1", "a2", "b3"))));
+    }
+
+    @Test
+    public void dropsBackendsWhichMissTheirDeadline() {
+        final FederatedSearchClient.Backend fast = new FederatedSearchClient.Backend("fast",
+                term -> Observable.just(Arrays.asList(term + "1", term + "2")).delay(100, TimeUnit.MILLISECONDS, scheduler),
+                500, TimeUnit.MILLISECONDS);
+        final FederatedSearchClient.Backend slow = new FederatedSearchClient.Backend("slow",
+                term -> Observable.just(Collections.singletonList("late")).delay(2, TimeUnit.SECONDS, scheduler),
+                1, TimeUnit.SECONDS);
+        final FederatedSearchClient.Backend failing = new FederatedSearchClient.Backend("failing",
+                term -> Observable.error(new RuntimeException("down")),
+                1, TimeUnit.SECONDS);
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        new FederatedSearchClient(scheduler, fast, slow, failing).searchRelated("x").subscribe(subscriber);
+
+        scheduler.advanceTimeBy(999, TimeUnit.MILLISECONDS);
+        subscriber.assertNoValues();
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        subscriber.assertValue(Arrays.asList("x1", "x2"));
+        subscriber.assertCompleted();
+        assertEquals(0, fast.getTimeouts());
+        assertEquals(1, slow.getTimeouts());
+        assertEquals(1, failing.getErrors());
+    }
+}
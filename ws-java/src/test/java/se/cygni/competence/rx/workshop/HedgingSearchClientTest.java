@@ -0,0 +1,102 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class HedgingSearchClientTest {
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    /**
+     * The first request takes a second, the following ones 10 ms.
+     */
+    private final SearchClient slowFirst = term -> {
+        final int request = requests.incrementAndGet();
+        return Observable.just(Collections.singletonList(term + request))
+                .delay(request == 1 ? 1000 : 10, TimeUnit.MILLISECONDS, scheduler)
+                .doOnUnsubscribe(cancelled::incrementAndGet);
+    };
+
+    @Test
+    public void hedgeWinsOverSlowRequest() {
+        final HedgingSearchClient client = new HedgingSearchClient(slowFirst, -1, 100, TimeUnit.MILLISECONDS, 1.0, scheduler);
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        client.searchRelated("x").subscribe(subscriber);
+
+        scheduler.advanceTimeBy(109, TimeUnit.MILLISECONDS);
+        subscriber.assertNoValues();
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        subscriber.assertValue(Collections.singletonList("x2"));
+        assertEquals(2, requests.get());
+        assertEquals(1, client.getHedges());
+        assertEquals(1, client.getHedgeWins());
+        assertEquals(2, cancelled.get());
+    }
+
+    @Test
+    public void doesNotHedgeBeyondBudget() {
+        final HedgingSearchClient client = new HedgingSearchClient(slowFirst, -1, 100, TimeUnit.MILLISECONDS, 0.0, scheduler);
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        client.searchRelated("x").subscribe(subscriber);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        subscriber.assertValue(Collections.singletonList("x1"));
+        assertEquals(1, requests.get());
+        assertEquals(0, client.getHedges());
+    }
+
+    @Test
+    public void failedHedgeFallsBackToPrimary() {
+        final SearchClient failingHedge = term -> requests.incrementAndGet() == 1
+                ? Observable.just(Collections.singletonList(term)).delay(1000, TimeUnit.MILLISECONDS, scheduler)
+                : Observable.<List<String>>error(new BackendUnavailableException("test", "overloaded"));
+        final HedgingSearchClient client = new HedgingSearchClient(failingHedge, -1, 100, TimeUnit.MILLISECONDS, 1.0, scheduler);
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        client.searchRelated("x").subscribe(subscriber);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertValue(Collections.singletonList("x"));
+        assertEquals(1, client.getHedges());
+        assertEquals(0, client.getHedgeWins());
+    }
+
+    @Test
+    public void failedPrimaryDefersToHedgeInFlight() {
+        final SearchClient failingPrimary = term -> requests.incrementAndGet() == 1
+                ? Observable.<List<String>>error(new BackendUnavailableException("test", "overloaded"))
+                        .delaySubscription(150, TimeUnit.MILLISECONDS, scheduler)
+                : Observable.just(Collections.singletonList(term)).delay(100, TimeUnit.MILLISECONDS, scheduler);
+        final HedgingSearchClient client = new HedgingSearchClient(failingPrimary, -1, 100, TimeUnit.MILLISECONDS, 1.0, scheduler);
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        client.searchRelated("x").subscribe(subscriber);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        subscriber.assertNoErrors();
+        subscriber.assertValue(Collections.singletonList("x"));
+        assertEquals(1, client.getHedgeWins());
+    }
+
+    @Test
+    public void failsWhenPrimaryAndHedgeFail() {
+        final SearchClient failing = term -> Observable.<List<String>>error(new BackendUnavailableException("test", "overloaded"))
+                .delaySubscription(requests.incrementAndGet() == 1 ? 150 : 100, TimeUnit.MILLISECONDS, scheduler);
+        final HedgingSearchClient client = new HedgingSearchClient(failing, -1, 100, TimeUnit.MILLISECONDS, 1.0, scheduler);
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        client.searchRelated("x").subscribe(subscriber);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        subscriber.assertError(BackendUnavailableException.class);
+        assertEquals(1, client.getHedges());
+    }
+}
@@ -0,0 +1,27 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyMetricsTest {
+
+    @Test
+    public void closeUnregistersDefault() throws Exception {
+        final ObjectName name = new ObjectName("se.cygni.competence.rx.workshop:type=LatencyMetrics");
+        final LatencyMetrics metrics = LatencyMetrics.getDefault();
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        metrics.close();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        final LatencyMetrics next = LatencyMetrics.getDefault();
+        assertNotSame(metrics, next);
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        next.close();
+    }
+}
@@ -0,0 +1,58 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Before;
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class LatestWinsTest {
+
+    private final LatestWins latestWins = new LatestWins();
+    private final PublishSubject<String> items = PublishSubject.create();
+    private final Map<String, PublishSubject<String>> requests = new HashMap<>();
+    private final TestSubscriber<String> results = new TestSubscriber<>();
+
+    @Before
+    public void subscribe() {
+        items.compose(latestWins.<String, String>switchMap(item -> {
+            final PublishSubject<String> request = PublishSubject.create();
+            requests.put(item, request);
+            return request;
+        })).subscribe(results);
+    }
+
+    @Test
+    public void cancelsAndCountsSupersededRequest() {
+        items.onNext("a");
+        items.onNext("b");
+        assertFalse(requests.get("a").hasObservers());
+        assertEquals(1, latestWins.getCancelledRequests());
+
+        requests.get("a").onNext("a done");
+        requests.get("b").onNext("b done");
+        results.assertValue("b done");
+    }
+
+    @Test
+    public void doesNotCountCompletedRequest() {
+        items.onNext("a");
+        requests.get("a").onNext("a done");
+        requests.get("a").onCompleted();
+        items.onNext("b");
+        assertEquals(0, latestWins.getCancelledRequests());
+    }
+
+    @Test
+    public void doesNotCountFailedRequest() {
+        items.onNext("a");
+        requests.get("a").onError(new IllegalStateException("failed"));
+        results.assertError(IllegalStateException.class);
+        assertEquals(0, latestWins.getCancelledRequests());
+    }
+}
@@ -0,0 +1,42 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.observers.TestSubscriber;
+
+import java.util.Arrays;
+
+public class LazyInputTest {
+
+    @Test
+    public void dropsEventsUntilSubscribed() {
+        final LazyInput<String> input = new LazyInput<>();
+        input.onNext("dropped");
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        input.asObservable().subscribe(subscriber);
+        input.onNext("a");
+        input.onNext("b");
+        subscriber.assertReceivedOnNext(Arrays.asList("a", "b"));
+        subscriber.assertNoTerminalEvent();
+    }
+
+    @Test
+    public void sharesEventsBetweenSubscribers() {
+        final LazyInput<String> input = new LazyInput<>();
+        final TestSubscriber<String> first = new TestSubscriber<>();
+        final TestSubscriber<String> second = new TestSubscriber<>();
+        input.asObservable().subscribe(first);
+        input.asObservable().subscribe(second);
+        input.onNext("a");
+        first.assertReceivedOnNext(Arrays.asList("a"));
+        second.assertReceivedOnNext(Arrays.asList("a"));
+    }
+
+    @Test
+    public void completesLateSubscribers() {
+        final LazyInput<String> input = new LazyInput<>();
+        input.onCompleted();
+        final TestSubscriber<String> subscriber = new TestSubscriber<>();
+        input.asObservable().subscribe(subscriber);
+        subscriber.assertCompleted();
+    }
+}
@@ -0,0 +1,82 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogTest {
+
+    private final Log.RingBuffer buffer = new Log.RingBuffer(2);
+
+    @Test
+    public void logsOnlyEnabledLevels() {
+        final Log log = new Log("logtest-gating", buffer);
+        log.debug("hidden");
+        log.info("shown");
+        assertFalse(log.isDebugEnabled());
+        assertEquals("shown", buffer.poll().message);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void changesLevelAtRuntime() {
+        final Log log = new Log("logtest-runtime", buffer);
+        log.setLevel(Log.Level.DEBUG);
+        log.debug("now shown");
+        assertEquals("now shown", buffer.poll().message);
+
+        log.setLevel(Log.Level.OFF);
+        log.warn("not even warnings");
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void readsLevelFromSystemProperty() {
+        System.setProperty("log.logtest-property", "debug");
+        assertEquals(Log.Level.DEBUG, new Log("logtest-property", buffer).getLevel());
+    }
+
+    @Test
+    public void fallsBackToInfoOnUnknownLevel() {
+        System.setProperty("log.logtest-typo", "debugg");
+        final Log log = new Log("logtest-typo", buffer);
+        assertEquals(Log.Level.INFO, log.getLevel());
+        assertTrue(buffer.poll().message.contains("debugg"));
+    }
+
+    @Test
+    public void countsMessagesDroppedWhenBufferIsFull() {
+        final Log log = new Log("logtest-dropped", buffer);
+        final long dropped = Log.getDropped();
+        log.info("a");
+        log.info("b");
+        log.info("c");
+        assertEquals(dropped + 1, Log.getDropped());
+        assertEquals("a", buffer.poll().message);
+        assertEquals("b", buffer.poll().message);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void writesToStdout() throws InterruptedException {
+        final PrintStream stdout = System.out;
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(written, true));
+        try {
+            Log.get("logtest-writer").info("written by the writer");
+            final long deadline = System.currentTimeMillis() + 3000;
+            while (!written.toString().contains("written by the writer") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            System.setOut(stdout);
+        }
+        assertTrue(written.toString().contains("written by the writer"));
+    }
+}
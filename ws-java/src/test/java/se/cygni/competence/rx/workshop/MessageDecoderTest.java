@@ -0,0 +1,82 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessageDecoderTest {
+
+    private static class RecordingListener implements MessageDecoder.Listener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onGoClick() {
+            events.add("go");
+        }
+
+        @Override
+        public void onQueryInput(String text) {
+            events.add("query:" + text);
+        }
+
+        @Override
+        public void onInstantEnable(boolean value) {
+            events.add("instant:" + value);
+        }
+
+        @Override
+        public void onEnterPress() {
+            events.add("enter");
+        }
+
+        @Override
+        public void onUnknown(String type) {
+            events.add("unknown:" + type);
+        }
+    }
+
+    private final MessageDecoder decoder = new MessageDecoder();
+
+    @Test
+    public void decodesAllMessageTypes() {
+        final RecordingListener listener = new RecordingListener();
+        decoder.decode("{\"type\":\"go.click\"}", listener);
+        decoder.decode("{\"type\":\"query.input\",\"text\":\"apa\"}", listener);
+        decoder.decode("{\"type\":\"instant.enable\",\"value\":true}", listener);
+        decoder.decode("{\"type\":\"enter.press\"}", listener);
+        decoder.decode("{\"type\":\"mouse.move\",\"x\":1}", listener);
+        assertEquals(Arrays.asList("go", "query:apa", "instant:true", "enter", "unknown:mouse.move"), listener.events);
+    }
+
+    @Test
+    public void typeMayComeAfterPayloadAndUnknownFieldsAreSkipped() {
+        final RecordingListener listener = new RecordingListener();
+        decoder.decode("{\"extra\":{\"a\":[1,2]},\"text\":\"b\",\"type\":\"query.input\"}", listener);
+        assertEquals(Arrays.asList("query:b"), listener.events);
+    }
+
+    @Test
+    public void decodesBinaryFramesWithoutConsumingThem() {
+        final RecordingListener listener = new RecordingListener();
+        final byte[] bytes = "xx{\"type\":\"instant.enable\",\"value\":false}".getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer heap = ByteBuffer.wrap(bytes, 2, bytes.length - 2);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip().position(2);
+        decoder.decode(heap, listener);
+        decoder.decode(direct, listener);
+        assertEquals(Arrays.asList("instant:false", "instant:false"), listener.events);
+        assertEquals(2, heap.position());
+        assertEquals(2, direct.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMessagesWithoutType() {
+        decoder.decode("{\"text\":\"a\"}", new RecordingListener());
+    }
+}
@@ -0,0 +1,52 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class OutboundBatchTest {
+
+    private final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+    private final OutboundStats stats = new OutboundStats();
+    private final List<ObjectNode> sent = new ArrayList<>();
+    private final OutboundBatch batch = new OutboundBatch(scheduler, 5000, stats, sent::add);
+
+    @Test
+    public void sendsMessagesWithinWindowAsOneFrame() {
+        final ObjectNode searching = Util.createStatusMessage("searching");
+        final ObjectNode done = Util.createStatusMessage("search for 'test' done");
+        final ObjectNode links = Util.createLinksMessage(Collections.singletonList("https://duckduckgo.com/test_1"));
+        batch.add(searching);
+        batch.add(done);
+        batch.add(links);
+        verify(scheduler, times(1)).schedule(any(Runnable.class), eq(5000L), eq(TimeUnit.MICROSECONDS));
+
+        batch.flush();
+        assertEquals(Collections.singletonList(Util.createBatchMessage(Arrays.asList(searching, done, links))), sent);
+        assertEquals(1, stats.getBatchFrames());
+        assertEquals(3, stats.getBatchedMessages());
+    }
+
+    @Test
+    public void sendsSingleMessageAsItIs() {
+        final ObjectNode ready = Util.createStatusMessage("ready");
+        batch.add(ready);
+        batch.flush();
+        batch.flush();
+        assertEquals(Collections.singletonList(ready), sent);
+        assertEquals(0, stats.getBatchFrames());
+    }
+}
@@ -0,0 +1,58 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.WebSocketListener;
+import org.java_websocket.drafts.Draft_6455;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class OutboundQueueTest {
+
+    private final WebSocketImpl webSocket = new WebSocketImpl(mock(WebSocketListener.class), new Draft_6455());
+    private final OutboundStats stats = new OutboundStats();
+    private final Set<OutboundQueue> draining = ConcurrentHashMap.newKeySet();
+    private final List<ObjectNode> written = new ArrayList<>();
+    private final OutboundQueue queue = new OutboundQueue(webSocket,
+            new ServerOptions().withOutboundLimit(2, 1024, 1, TimeUnit.MINUTES), stats, draining, (kind, message) -> written.add(message));
+
+    @Test
+    public void writesStraightAwayBelowLimit() {
+        final ObjectNode status = Util.createStatusMessage("ready");
+        queue.offer(OutboundQueue.Kind.STATUS, status);
+        assertEquals(Collections.singletonList(status), written);
+        assertTrue(draining.isEmpty());
+    }
+
+    @Test
+    public void keepsNewestOfEachKindWhileOverLimit() {
+        webSocket.outQueue.add(ByteBuffer.allocate(10));
+        webSocket.outQueue.add(ByteBuffer.allocate(10));
+        final ObjectNode searching = Util.createStatusMessage("searching");
+        final ObjectNode links = Util.createLinksMessage(Collections.singletonList("https://duckduckgo.com/test_1"));
+        final ObjectNode done = Util.createStatusMessage("search for 'test' done");
+        queue.offer(OutboundQueue.Kind.STATUS, searching);
+        queue.offer(OutboundQueue.Kind.LINKS, links);
+        queue.offer(OutboundQueue.Kind.STATUS, done);
+        assertEquals(Collections.emptyList(), written);
+        assertEquals(Collections.singleton(queue), draining);
+        assertEquals(1, stats.getConflatedFrames());
+
+        webSocket.outQueue.clear();
+        queue.drain(System.currentTimeMillis());
+        assertEquals(Arrays.asList(links, done), written);
+        assertTrue(draining.isEmpty());
+    }
+}
@@ -0,0 +1,96 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class PrefixSearchTest {
+
+    private static final List<String> APA_LINKS = Arrays.asList(
+            "https://duckduckgo.com/Apache_Kafka", "https://duckduckgo.com/Apache_Spark", "https://duckduckgo.com/Apatosaurus");
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final AtomicInteger upstream = new AtomicInteger();
+    private final SearchClient backend = term -> {
+        upstream.incrementAndGet();
+        return Observable.just(APA_LINKS);
+    };
+    private final PrefixSearch prefixSearch = new PrefixSearch(backend, 100, 300, TimeUnit.MILLISECONDS, scheduler);
+
+    @Test
+    public void goesUpstreamOnlyOnceStable() {
+        final SearchClient session = prefixSearch.newSession();
+        final TestSubscriber<List<String>> first = new TestSubscriber<>();
+        session.searchRelated("ap").subscribe(first);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        first.unsubscribe();
+        final TestSubscriber<List<String>> second = new TestSubscriber<>();
+        session.searchRelated("apa").subscribe(second);
+        scheduler.advanceTimeBy(299, TimeUnit.MILLISECONDS);
+        assertEquals(0, upstream.get());
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        second.assertValue(APA_LINKS);
+        assertEquals(1, upstream.get());
+    }
+
+    @Test
+    public void answersRefinementAtOnceFromPrefix() {
+        final SearchClient session = prefixSearch.newSession();
+        session.searchRelated("Apa").subscribe();
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+
+        final TestSubscriber<List<String>> refined = new TestSubscriber<>();
+        session.searchRelated("apache  K").subscribe(refined);
+        refined.assertValue(Collections.singletonList("https://duckduckgo.com/Apache_Kafka"));
+        assertEquals(1, prefixSearch.getImmediateAnswers());
+    }
+
+    @Test
+    public void sharesResultsBetweenSessions() {
+        prefixSearch.newSession().searchRelated("apa").subscribe();
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+
+        final TestSubscriber<List<String>> other = new TestSubscriber<>();
+        prefixSearch.newSession().searchRelated("apach").subscribe(other);
+        other.assertValue(Arrays.asList("https://duckduckgo.com/Apache_Kafka", "https://duckduckgo.com/Apache_Spark"));
+    }
+
+    @Test
+    public void fallsBackToShorterPrefixWhenLongerLeavesNothing() {
+        final PrefixSearch search = new PrefixSearch(term -> Observable.just(term.equals("apa")
+                ? APA_LINKS : Collections.singletonList("https://duckduckgo.com/Apache_Spark")),
+                100, 300, TimeUnit.MILLISECONDS, scheduler);
+        final PrefixSearch.Session session = search.newSession();
+        session.searchRelated("apa").subscribe();
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        session.searchRelated("apache").subscribe();
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+
+        final TestSubscriber<List<String>> refined = new TestSubscriber<>();
+        session.cached("apache k").subscribe(refined);
+        refined.assertValue(Collections.singletonList("https://duckduckgo.com/Apache_Kafka"));
+    }
+
+    @Test
+    public void cachedIsEmptyWithoutEarlierResults() {
+        final TestSubscriber<List<String>> cached = new TestSubscriber<>();
+        prefixSearch.newSession().cached("apa").subscribe(cached);
+        cached.assertNoValues();
+        cached.assertCompleted();
+        assertEquals(0, upstream.get());
+    }
+
+    @Test
+    public void titleOfLink() {
+        assertEquals("caf\u00e9 society", PrefixSearch.title("https://en.wikipedia.org/wiki/Caf%C3%A9_Society"));
+    }
+}
@@ -0,0 +1,72 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProtectedSearchClientTest {
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final ConcurrencyLimit limit = new ConcurrencyLimit(2, 1, 10);
+    private final CircuitBreaker breaker = new CircuitBreaker(2, 1000);
+
+    private ProtectedSearchClient protect(SearchClient delegate) {
+        return new ProtectedSearchClient("test", delegate, limit, breaker, 100, TimeUnit.MILLISECONDS, scheduler);
+    }
+
+    @Test
+    public void rejectsBeyondLimit() {
+        final ProtectedSearchClient client = protect(term -> Observable.never());
+        client.searchRelated("a").subscribe(new TestSubscriber<>());
+        client.searchRelated("b").subscribe(new TestSubscriber<>());
+        final TestSubscriber<List<String>> rejected = new TestSubscriber<>();
+        client.searchRelated("c").subscribe(rejected);
+        rejected.assertError(BackendUnavailableException.class);
+        assertEquals(1, client.getLimited());
+    }
+
+    @Test
+    public void countsTimeoutAsFailure() {
+        final ProtectedSearchClient client = protect(term -> Observable.never());
+        for (int i = 0; i < 2; i++) {
+            final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+            client.searchRelated("a").subscribe(subscriber);
+            scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+            subscriber.assertError(TimeoutException.class);
+        }
+        assertEquals(0, limit.getInFlight());
+        assertEquals(1, limit.getLimit());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        final TestSubscriber<List<String>> shortCircuited = new TestSubscriber<>();
+        client.searchRelated("a").subscribe(shortCircuited);
+        shortCircuited.assertError(BackendUnavailableException.class);
+        assertEquals(1, client.getShortCircuited());
+    }
+
+    @Test
+    public void cancelledSearchCountsAsNeither() {
+        final ProtectedSearchClient client = protect(term -> Observable.never());
+        client.searchRelated("a").subscribe(new TestSubscriber<>()).unsubscribe();
+        client.searchRelated("a").subscribe(new TestSubscriber<>()).unsubscribe();
+        assertEquals(0, limit.getInFlight());
+        assertEquals(2, limit.getLimit());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void releasesPermitOnSuccess() {
+        final ProtectedSearchClient client = protect(term -> Observable.just(Collections.singletonList(term)));
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        client.searchRelated("a").subscribe(subscriber);
+        subscriber.assertValue(Collections.singletonList("a"));
+        assertEquals(0, limit.getInFlight());
+    }
+}
@@ -0,0 +1,74 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.Subscription;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SearchHubTest {
+
+    private final PublishSubject<List<String>> upstream = PublishSubject.create();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final SearchHub hub = new SearchHub(term -> upstream.doOnUnsubscribe(cancelled::incrementAndGet));
+
+    @Test
+    public void collapsesConcurrentSearchesForSameText() {
+        final TestSubscriber<List<String>> first = new TestSubscriber<>();
+        final TestSubscriber<List<String>> second = new TestSubscriber<>();
+        hub.searchRelated("Kafka").subscribe(first);
+        hub.searchRelated(" kafka ").subscribe(second);
+        upstream.onNext(Collections.singletonList("https://duckduckgo.com/Kafka"));
+        upstream.onCompleted();
+
+        first.assertValue(Collections.singletonList("https://duckduckgo.com/Kafka"));
+        second.assertValue(Collections.singletonList("https://duckduckgo.com/Kafka"));
+        assertEquals(1, hub.getUpstreamSearches());
+        assertEquals(0.5, hub.getCollapseRatio(), 0);
+        assertEquals(0, hub.getInFlight());
+    }
+
+    @Test
+    public void cancelsUpstreamOnlyWhenAllHaveUnsubscribed() {
+        final Subscription first = hub.searchRelated("kafka").subscribe();
+        final Subscription second = hub.searchRelated("kafka").subscribe();
+        first.unsubscribe();
+        assertEquals(0, cancelled.get());
+        assertTrue(upstream.hasObservers());
+
+        second.unsubscribe();
+        assertEquals(1, cancelled.get());
+        assertFalse(upstream.hasObservers());
+        assertEquals(0, hub.getInFlight());
+    }
+
+    @Test
+    public void searchDuringEmissionGoesUpstreamAgain() {
+        final List<PublishSubject<List<String>>> searches = new ArrayList<>();
+        final SearchHub hub = new SearchHub(term -> {
+            final PublishSubject<List<String>> search = PublishSubject.create();
+            searches.add(search);
+            return search;
+        });
+        final TestSubscriber<List<String>> second = new TestSubscriber<>();
+        hub.searchRelated("kafka").subscribe(links -> hub.searchRelated("kafka").subscribe(second));
+        searches.get(0).onNext(Collections.singletonList("https://duckduckgo.com/Kafka"));
+        searches.get(0).onCompleted();
+        second.assertNoTerminalEvent();
+        assertEquals(2, hub.getUpstreamSearches());
+
+        searches.get(1).onNext(Collections.singletonList("https://duckduckgo.com/Kafka_2"));
+        searches.get(1).onCompleted();
+        second.assertValue(Collections.singletonList("https://duckduckgo.com/Kafka_2"));
+        second.assertCompleted();
+        assertEquals(0, hub.getInFlight());
+    }
+}
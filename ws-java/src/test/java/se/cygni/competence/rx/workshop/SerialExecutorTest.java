@@ -0,0 +1,69 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SerialExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void runsTasksOneAtATimeInOrder() throws InterruptedException {
+        final SerialExecutor executor = new SerialExecutor(pool);
+        final int tasks = 10000;
+        final List<Integer> ran = new ArrayList<>();
+        final AtomicBoolean running = new AtomicBoolean();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            final int task = i;
+            executor.execute(() -> {
+                if (!running.compareAndSet(false, true)) {
+                    overlapped.set(true);
+                }
+                ran.add(task);
+                running.set(false);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertFalse(overlapped.get());
+        for (int i = 0; i < tasks; i++) {
+            assertEquals(i, (int) ran.get(i));
+        }
+    }
+
+    @Test
+    public void keepsGoingAfterFailingTask() throws InterruptedException {
+        final SerialExecutor executor = new SerialExecutor(pool);
+        final AtomicInteger ran = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(() -> {
+            throw new IllegalStateException("expected");
+        });
+        executor.execute(() -> {
+            ran.incrementAndGet();
+            done.countDown();
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, ran.get());
+    }
+}
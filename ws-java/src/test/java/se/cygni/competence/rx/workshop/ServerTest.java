@@ -1,30 +1,69 @@
 package se.cygni.competence.rx.workshop;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+import org.junit.After;
 import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class ServerTest {
 
+    private FakeSearchBackend backend;
+    private Server server;
+    private WebSocketClient client;
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.closeBlocking();
+        }
+        if (server != null) {
+            server.stop(1000);
+        }
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
     @Test
-    public void doSearch() throws UnknownHostException, URISyntaxException, InterruptedException {
-        final Server s = new Server(0, new FacitHandler(new DuckDuckGoClient()));
-        s.start();
+    public void doSearch() throws IOException, URISyntaxException, InterruptedException {
+        backend = new FakeSearchBackend(4, 64, FakeSearchBackend.LatencyDistribution.fixed(10));
+        server = new Server(0, new FacitHandler(new DuckDuckGoClient(backend.getHost(), backend.getPort())));
+        server.start();
         //It ain't pretty but there's no choice (except socket polling) AFAIK
         Thread.sleep(100);
-        final int port = s.getPort();
+        final int port = server.getPort();
         final URI uri = new URI("http://localhost:" + port);
         System.out.println(uri);
         final CountDownLatch answersProcessed = new CountDownLatch(4);
-        final WebSocketClient client = new WebSocketClient(uri) {
+        client = new WebSocketClient(uri) {
             @Override
             public void onOpen(ServerHandshake serverHandshake) {
 
@@ -40,7 +79,7 @@ public class ServerTest {
                 } else if (answersProcessed.getCount() == 2) {
                     assertEquals("{\"type\":\"backend.status\",\"status\":\"search for 'test' done\"}", s);
                 } else if (answersProcessed.getCount() == 1) {
-                    assertEquals("{\"type\":\"new.links\",\"links\":[\"https://duckduckgo.com/Software_testing\",\"https://duckduckgo.com/statistical_hypothesis_testing\",\"https://duckduckgo.com/Test_(wrestler)\",\"https://duckduckgo.com/Test_(assessment)\"]}", s);
+                    assertEquals("{\"type\":\"new.links\",\"links\":[\"https://duckduckgo.com/test_1\",\"https://duckduckgo.com/test_2\",\"https://duckduckgo.com/test_3\",\"https://duckduckgo.com/test_4\"]}", s);
                 } else {
                     assert false;
                 }
@@ -67,4 +106,158 @@ public class ServerTest {
                 "}");
         assert answersProcessed.await(3, TimeUnit.SECONDS);
     }
+
+    @Test
+    public void doSearchOverCbor() throws IOException, URISyntaxException, InterruptedException {
+        backend = new FakeSearchBackend(2, 0, FakeSearchBackend.LatencyDistribution.fixed(10));
+        server = new Server(0, new FacitHandler(new DuckDuckGoClient(backend.getHost(), backend.getPort())));
+        server.start();
+        Thread.sleep(100);
+        final URI uri = new URI("http://localhost:" + server.getPort());
+        final Draft_6455 cbor = new Draft_6455(Collections.<IExtension>emptyList(),
+                Collections.<IProtocol>singletonList(new Protocol(WireFormat.CBOR.getSubprotocol())));
+        final BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        client = new WebSocketClient(uri, cbor) {
+            @Override
+            public void onOpen(ServerHandshake serverHandshake) {
+            }
+
+            @Override
+            public void onMessage(String s) {
+                received.add(Util.toJson(s));
+            }
+
+            @Override
+            public void onMessage(ByteBuffer bytes) {
+                try {
+                    received.add(WireFormat.CBOR.mapper.readTree(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void onClose(int i, String s, boolean b) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                e.printStackTrace();
+            }
+        };
+        assert client.connectBlocking();
+        final ObjectMapper mapper = WireFormat.CBOR.mapper;
+        client.send(mapper.writeValueAsBytes(JsonNodeFactory.instance.objectNode().put("type", "query.input").put("text", "test")));
+        client.send(mapper.writeValueAsBytes(JsonNodeFactory.instance.objectNode().put("type", "go.click")));
+        assertEquals(Util.createStatusMessage("ready"), received.poll(3, TimeUnit.SECONDS));
+        assertEquals(Util.createStatusMessage("searching"), received.poll(3, TimeUnit.SECONDS));
+        assertEquals(Util.createStatusMessage("search for 'test' done"), received.poll(3, TimeUnit.SECONDS));
+        assertEquals(Util.createLinksMessage(Arrays.asList("https://duckduckgo.com/test_1", "https://duckduckgo.com/test_2")),
+                received.poll(3, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Passes query inputs on as statuses, requesting inputs only as fast as the status output does.
+     */
+    private static class EchoHandler implements ReactiveConnectionHandler {
+        @Override
+        public void onConnectionOpen(Publisher<String> goClicks, Publisher<String> queryInputs, Publisher<Boolean> instantSearchChanges,
+                                     Publisher<String> enterPresses, Subscriber<List<String>> links, Subscriber<String> status) {
+            queryInputs.subscribe(new Subscriber<String>() {
+                @Override
+                public void onSubscribe(Subscription upstream) {
+                    status.onSubscribe(upstream);
+                }
+
+                @Override
+                public void onNext(String text) {
+                    status.onNext("echo " + text);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    status.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    status.onComplete();
+                }
+            });
+        }
+    }
+
+    @Test
+    public void echoOverReactiveStreams() throws IOException, URISyntaxException, InterruptedException {
+        server = new Server(0, new EchoHandler(), new ServerOptions());
+        server.start();
+        Thread.sleep(100);
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        client = new WebSocketClient(new URI("http://localhost:" + server.getPort())) {
+            @Override
+            public void onOpen(ServerHandshake serverHandshake) {
+            }
+
+            @Override
+            public void onMessage(String s) {
+                received.add(s);
+            }
+
+            @Override
+            public void onClose(int i, String s, boolean b) {
+            }
+
+            @Override
+            public void onError(Exception e) {
+                e.printStackTrace();
+            }
+        };
+        assert client.connectBlocking();
+        client.send("{\"type\":\"query.input\",\"text\":\"a\"}");
+        client.send("{\"type\":\"query.input\",\"text\":\"ab\"}");
+        assertEquals("{\"type\":\"backend.status\",\"status\":\"echo a\"}", received.poll(3, TimeUnit.SECONDS));
+        assertEquals("{\"type\":\"backend.status\",\"status\":\"echo ab\"}", received.poll(3, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closesConnectionWhenHandlerFailsToOpen() throws IOException, URISyntaxException, InterruptedException {
+        final ConnectionHandler failing = (goClicks, queryInputs, instantSearchChanges, enterPresses, links, status) -> {
+            throw new IllegalStateException("no pipeline");
+        };
+        server = new Server(0, failing, new ServerOptions().withHandlerThreads(1));
+        server.start();
+        Thread.sleep(100);
+        final BlockingQueue<Integer> closeCodes = new LinkedBlockingQueue<>();
+        client = new WebSocketClient(new URI("http://localhost:" + server.getPort())) {
+            @Override
+            public void onOpen(ServerHandshake serverHandshake) {
+            }
+
+            @Override
+            public void onMessage(String s) {
+            }
+
+            @Override
+            public void onClose(int i, String s, boolean b) {
+                closeCodes.add(i);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                e.printStackTrace();
+            }
+        };
+        assert client.connectBlocking();
+        assertEquals(Integer.valueOf(CloseFrame.UNEXPECTED_CONDITION), closeCodes.poll(3, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void findsLinksInBatches() {
+        final ObjectNode links = Util.createLinksMessage(Collections.singletonList("https://duckduckgo.com/test_1"));
+        final ObjectNode status = Util.createStatusMessage("search for 'test' done");
+        assertTrue(Server.hasLinks(links));
+        assertFalse(Server.hasLinks(status));
+        assertTrue(Server.hasLinks(Util.createBatchMessage(Arrays.asList(status, links))));
+        assertFalse(Server.hasLinks(Util.createBatchMessage(Arrays.asList(status, status))));
+    }
 }
@@ -0,0 +1,71 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.schedulers.TestScheduler;
+import rx.subjects.PublishSubject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class SpeculativePrefetchTest {
+
+    private final TestScheduler scheduler = new TestScheduler();
+    private final AtomicInteger upstream = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final SearchClient backend = term -> Observable.defer(() -> {
+        upstream.incrementAndGet();
+        return Observable.just(Collections.singletonList(term))
+                .delay(500, TimeUnit.MILLISECONDS, scheduler)
+                .doOnUnsubscribe(cancelled::incrementAndGet);
+    });
+    private final SpeculativePrefetch prefetch = new SpeculativePrefetch(backend, 200, TimeUnit.MILLISECONDS, 10, scheduler);
+    private final PublishSubject<String> text = PublishSubject.create();
+    private final SpeculativePrefetch.Session session = prefetch.newSession();
+
+    @Test
+    public void adoptsSpeculativeSearchForSameText() {
+        session.speculate(text);
+        text.onNext("kafka");
+        scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        session.searchRelated("kafka").subscribe(subscriber);
+        subscriber.assertValue(Collections.singletonList("kafka"));
+        assertEquals(1, upstream.get());
+        assertEquals(1, prefetch.getAdopted());
+        assertEquals(500, prefetch.getSavedMillis());
+    }
+
+    @Test
+    public void cancelsSpeculationForChangedText() {
+        session.speculate(text);
+        text.onNext("kaf");
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        text.onNext("kafka");
+        scheduler.advanceTimeBy(300, TimeUnit.MILLISECONDS);
+        assertEquals(1, cancelled.get());
+
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        session.searchRelated("kafka").subscribe(subscriber);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        subscriber.assertValue(Collections.singletonList("kafka"));
+        assertEquals(2, upstream.get());
+        assertEquals(1, prefetch.getAdopted());
+        assertEquals(0.5, prefetch.getWastedRatio(), 0);
+    }
+
+    @Test
+    public void searchesDirectlyWithoutSpeculation() {
+        final TestSubscriber<List<String>> subscriber = new TestSubscriber<>();
+        session.searchRelated("kafka").subscribe(subscriber);
+        scheduler.advanceTimeBy(500, TimeUnit.MILLISECONDS);
+        subscriber.assertValue(Collections.singletonList("kafka"));
+        assertEquals(0, prefetch.getPrefetches());
+    }
+}
@@ -0,0 +1,52 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingJsonExtractorTest {
+
+    private static final String DUCK_DUCK_GO_RESPONSE = "{\"Abstract\":\"\",\"RelatedTopics\":[" +
+            "{\"Result\":\"<a href=\\\"https://duckduckgo.com/Software_testing\\\">Software testing</a>\"," +
+            "\"FirstURL\":\"https://duckduckgo.com/Software_testing\",\"Icon\":{\"URL\":\"\"}}," +
+            "{\"Name\":\"In media\",\"Topics\":[{\"FirstURL\":\"https://duckduckgo.com/Nested\"}]}," +
+            "{\"FirstURL\":\"https://duckduckgo.com/Test_(assessment)\"}]," +
+            "\"FirstURL\":\"https://duckduckgo.com/NotRelated\"}";
+
+    @Test
+    public void extractsDuckDuckGoLinksFedByteByByte() {
+        final StreamingJsonExtractor extractor = new StreamingJsonExtractor("RelatedTopics", StreamingJsonExtractor.ANY, "FirstURL");
+        final byte[] bytes = DUCK_DUCK_GO_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i++) {
+            extractor.feed(bytes, i, 1);
+        }
+        assertEquals(Arrays.asList("https://duckduckgo.com/Software_testing", "https://duckduckgo.com/Test_(assessment)"),
+                extractor.finish());
+    }
+
+    @Test
+    public void parsesDuckDuckGoResponse() {
+        assertEquals(Arrays.asList("https://duckduckgo.com/Software_testing", "https://duckduckgo.com/Test_(assessment)"),
+                DuckDuckGoClient.parseLinks(DUCK_DUCK_GO_RESPONSE));
+    }
+
+    @Test
+    public void parsesWikipediaResponse() {
+        final String response = "{\"batchcomplete\":\"\",\"query\":{\"pages\":{" +
+                "\"1\":{\"title\":\"Test\",\"canonicalurl\":\"https://en.wikipedia.org/wiki/Test\"}," +
+                "\"2\":{\"title\":\"T\u00e9st\",\"canonicalurl\":\"https://en.wikipedia.org/wiki/T%C3%A9st\"}}}}";
+        assertEquals(Arrays.asList("https://en.wikipedia.org/wiki/Test", "https://en.wikipedia.org/wiki/T%C3%A9st"),
+                WikipediaSearchClient.parseLinks(response));
+    }
+
+    @Test
+    public void emptyWikipediaResponseHasNoLinks() {
+        final List<String> links = WikipediaSearchClient.parseLinks("{\"batchcomplete\":\"\"}");
+        assertEquals(Collections.emptyList(), links);
+    }
+}
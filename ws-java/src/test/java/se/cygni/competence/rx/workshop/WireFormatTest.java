@@ -0,0 +1,74 @@
+package se.cygni.competence.rx.workshop;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.WebSocketListener;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.HandshakeState;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.handshake.HandshakeImpl1Client;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WireFormatTest {
+
+    private final ObjectNode links = Util.createLinksMessage(Arrays.asList("https://duckduckgo.com/Kafka", "https://duckduckgo.com/Franz_Kafka"));
+
+    @Test
+    public void decodesCborQueryInput() throws Exception {
+        final ObjectNode message = JsonNodeFactory.instance.objectNode().put("type", "query.input").put("text", "kafka");
+        final byte[] bytes = WireFormat.CBOR.mapper.writeValueAsBytes(message);
+        final MessageDecoder.Listener listener = mock(MessageDecoder.Listener.class);
+        WireFormat.CBOR.getDecoder().decode(ByteBuffer.wrap(bytes), listener);
+        verify(listener).onQueryInput("kafka");
+    }
+
+    @Test
+    public void sendsCborInBinaryFrames() throws Exception {
+        final WebSocket webSocket = mock(WebSocket.class);
+        WireFormat.CBOR.send(webSocket, links);
+        final ArgumentCaptor<byte[]> sent = ArgumentCaptor.forClass(byte[].class);
+        verify(webSocket).send(sent.capture());
+        verify(webSocket, never()).send(anyString());
+        assertEquals(links, WireFormat.CBOR.mapper.readTree(sent.getValue()));
+    }
+
+    @Test
+    public void sendsJsonInTextFrames() throws Exception {
+        final WebSocket webSocket = mock(WebSocket.class);
+        WireFormat.JSON.send(webSocket, links);
+        verify(webSocket).send(Util.toString(links));
+        verify(webSocket, never()).send(any(byte[].class));
+    }
+
+    @Test
+    public void usesNegotiatedCbor() throws Exception {
+        final Draft_6455 draft = new Draft_6455(Collections.<IExtension>emptyList(), WireFormat.protocols());
+        final HandshakeImpl1Client handshake = new HandshakeImpl1Client();
+        handshake.put("Sec-WebSocket-Version", "13");
+        handshake.put("Sec-WebSocket-Protocol", WireFormat.CBOR.getSubprotocol());
+        assertEquals(HandshakeState.MATCHED, draft.acceptHandshakeAsServer(handshake));
+        final WebSocket webSocket = mock(WebSocket.class);
+        when(webSocket.getDraft()).thenReturn(draft);
+        assertEquals(WireFormat.CBOR, WireFormat.of(webSocket));
+    }
+
+    @Test
+    public void defaultsToJsonBeforeNegotiation() {
+        assertEquals(WireFormat.JSON, WireFormat.of(new WebSocketImpl(mock(WebSocketListener.class), new Draft_6455())));
+    }
+}
@@ -0,0 +1,111 @@
+package se.cygni.competence.rx.workshop;
+
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.Closed;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.Completed;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.EnterPress;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.Event;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.GoClick;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.InstantSearchChange;
+import se.cygni.competence.rx.workshop.BlockingConnectionHandler.QueryInput;
+
+/**
+ * The behaviour of {@link FacitHandler}, written as a {@link BlockingConnectionHandler}: searches on go clicks
+ * and enter presses, and while instant search is enabled one second after the last keystroke. A newer search
+ * cancels the older one.
+ */
+public class BlockingFacitHandler implements BlockingConnectionHandler {
+
+    private final SearchClient searchClient;
+    private final long debounceNanos;
+
+    public BlockingFacitHandler(SearchClient searchClient) {
+        this(searchClient, 1, TimeUnit.SECONDS);
+    }
+
+    public BlockingFacitHandler(SearchClient searchClient, long debounce, TimeUnit unit) {
+        this.searchClient = searchClient;
+        this.debounceNanos = unit.toNanos(debounce);
+    }
+
+    @Override
+    public void handle(Connection connection) throws Exception {
+        String text = "";
+        boolean instant = false;
+        //When to run the instant search being debounced, or 0
+        long instantAt = 0;
+        Future<?> search = null;
+        long searchId = 0;
+        String searchTerm = null;
+        connection.status("ready");
+        while (true) {
+            final Event event = instantAt == 0 ? connection.take() : connection.poll(instantAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+            String term = null;
+            switch (event) {
+                case null -> {
+                    instantAt = 0;
+                    term = text;
+                }
+                case QueryInput input -> {
+                    text = input.text();
+                    instantAt = listen(connection, instant, text);
+                }
+                case InstantSearchChange change -> {
+                    instant = change.enabled();
+                    instantAt = listen(connection, instant, text);
+                }
+                case GoClick click -> term = text;
+                case EnterPress press -> term = text;
+                case Completed completed -> {
+                    //Outcomes of cancelled searches may still be queued
+                    if (completed.id() == searchId) {
+                        onSearched(connection, searchTerm, completed);
+                    }
+                }
+                case Closed closed -> {
+                    if (search != null) {
+                        search.cancel(true);
+                    }
+                    return;
+                }
+            }
+            if (term != null && !term.isEmpty()) {
+                connection.status("searching");
+                if (search != null) {
+                    search.cancel(true);
+                }
+                final String current = term;
+                searchTerm = term;
+                search = connection.fork(++searchId, () -> searchClient.searchRelated(current).toBlocking().firstOrDefault(null));
+            }
+        }
+    }
+
+    private long listen(Connection connection, boolean instant, String text) {
+        if (!instant || text.isEmpty()) {
+            return 0;
+        }
+        connection.status("listening");
+        return System.nanoTime() + debounceNanos;
+    }
+
+    private static void onSearched(Connection connection, String searchTerm, Completed completed) {
+        if (completed.error() != null) {
+            connection.status(completed.error() instanceof BackendUnavailableException
+                    ? completed.error().getMessage() : "search for '" + searchTerm + "' failed");
+        } else if (completed.result() != null) {
+            @SuppressWarnings("unchecked")
+            final List<String> links = (List<String>) completed.result();
+            connection.status("search for '" + searchTerm + "' done");
+            connection.links(links);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException, UnknownHostException {
+        Server.startAndServe(new VirtualThreadHandler(new BlockingFacitHandler(new DuckDuckGoClient())));
+    }
+}
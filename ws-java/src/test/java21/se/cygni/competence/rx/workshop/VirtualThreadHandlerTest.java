@@ -0,0 +1,69 @@
+package se.cygni.competence.rx.workshop;
+
+import org.junit.Test;
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class VirtualThreadHandlerTest {
+
+    private final PublishSubject<String> goClicks = PublishSubject.create();
+    private final PublishSubject<String> queryInputs = PublishSubject.create();
+    private final PublishSubject<Boolean> instantSearchChanges = PublishSubject.create();
+    private final PublishSubject<String> enterPresses = PublishSubject.create();
+    private final PublishSubject<List<String>> links = PublishSubject.create();
+    private final PublishSubject<String> status = PublishSubject.create();
+    private final BlockingQueue<List<String>> receivedLinks = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> receivedStatus = new LinkedBlockingQueue<>();
+
+    private VirtualThreadHandler open(SearchClient client) {
+        links.subscribe(receivedLinks::add);
+        status.subscribe(receivedStatus::add);
+        final VirtualThreadHandler handler = new VirtualThreadHandler(new BlockingFacitHandler(client, 50, TimeUnit.MILLISECONDS));
+        handler.onConnectionOpen(goClicks, queryInputs, instantSearchChanges, enterPresses, links, status);
+        return handler;
+    }
+
+    @Test
+    public void searchesOnGoClick() throws InterruptedException {
+        open(term -> Observable.just(Arrays.asList("http://" + term)));
+        assertEquals("ready", receivedStatus.poll(5, TimeUnit.SECONDS));
+        queryInputs.onNext("rx");
+        goClicks.onNext("");
+        assertEquals(Arrays.asList("http://rx"), receivedLinks.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void newerInstantSearchWins() throws InterruptedException {
+        open(term -> term.equals("r")
+                ? Observable.just(Arrays.asList("http://r")).delay(200, TimeUnit.MILLISECONDS)
+                : Observable.just(Arrays.asList("http://" + term)));
+        instantSearchChanges.onNext(true);
+        queryInputs.onNext("r");
+        Thread.sleep(100);
+        queryInputs.onNext("rx");
+        assertEquals(Arrays.asList("http://rx"), receivedLinks.poll(5, TimeUnit.SECONDS));
+        assertEquals(null, receivedLinks.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void stopsWhenInputsComplete() throws InterruptedException {
+        final VirtualThreadHandler handler = open(term -> Observable.never());
+        assertEquals(1, handler.getRunningHandlers());
+        goClicks.onCompleted();
+        queryInputs.onCompleted();
+        instantSearchChanges.onCompleted();
+        enterPresses.onCompleted();
+        for (int i = 0; i < 100 && handler.getRunningHandlers() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, handler.getRunningHandlers());
+    }
+}